@@ -0,0 +1,301 @@
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A brain that runs a beam search over the known piece sequence: the current
+ *      piece followed by the preview pieces.
+ *  At each ply every board in the beam tries every play of that ply's piece,
+ *      rating the result with SimpleBrain's rateBoard(), and the best "width"
+ *      results become the next beam. Plays that leave the same board (same
+ *      hash) are only kept once. After "depth" plies, or when the known pieces
+ *      run out, the move is the first play of the best line.
+ *
+ *  Each board in the beam is its own Board, refilled with copyFrom(), and
+ *      tries its plays with placeTrusted() and undo(). The boards of a ply are
+ *      expanded in parallel on the common ForkJoinPool, and the results are
+ *      merged in a fixed order (score, then beam position, then play), so the
+ *      move does not depend on the number of threads. As in SimpleBrain, a
+ *      subclass that overrides rateBoard() expands them one after another
+ *      unless it also overrides getRateCost().
+ *
+ *  With depth 1, or no preview, this plays like SimpleBrain.
+ *
+ * @author agent
+ * @version 17 October 2026
+ */
+public class BeamBrain extends SimpleBrain
+{
+    public static final int DEFAULT_WIDTH = 16;
+
+    // the current piece and JTetris's one preview piece (JTetris.PREVIEW_SIZE);
+    //  a deeper search needs a longer preview to make a difference
+    public static final int DEFAULT_DEPTH = 2;
+
+    private int width;
+    private int depth;
+
+    // the beam of the current ply and the one being built for the next
+    private State[] beam;
+    private State[] nextBeam;
+
+    /**
+     * Creates a beam search brain with the default width and depth.
+     */
+    public BeamBrain()
+    {
+        this(DEFAULT_WIDTH, DEFAULT_DEPTH);
+    }
+
+    /**
+     * Creates a beam search brain.
+     *
+     *  @param width    how many boards are kept at each ply; at least 1
+     *  @param depth    how many pieces are searched, at most; at least 1
+     */
+    public BeamBrain(int width, int depth)
+    {
+        if (width < 1 || depth < 1)
+        {
+            throw new IllegalArgumentException("bad beam size: width " + width +
+                    ", depth " + depth);
+        }
+
+        this.width = width;
+        this.depth = depth;
+        this.beam = new State[width];
+        this.nextBeam = new State[width];
+        for (int i = 0; i < width; i++)
+        {
+            this.beam[i] = new State();
+            this.nextBeam[i] = new State();
+        }
+    }
+
+    /**
+     * Given a piece, the pieces after it and a board, returns a move object
+     *      that represents the first play of the best line found, or returns
+     *      null if no play is possible.
+     *  See the Brain interface for details.
+     *
+     *  @param board        the board in which to calculate the best move
+     *  @param piece        the piece to place in the optimal location on the board
+     *  @param preview      the pieces that come next, in order
+     *  @param limitHeight  the piece must be placed below this height
+     *  @param move         the move to hold the result, or null for a new one
+     *  @return             the best move for the specified piece
+     */
+    @Override
+    public Move bestMove(Board board, Piece piece, Piece[] preview, int limitHeight,
+            Move move)
+    {
+        final int plies = Math.min(this.depth, 1 + ((preview == null) ? 0 : preview.length));
+
+        this.beam[0].copyFrom(board);
+        int beamSize = 1;
+        for (int ply = 0; ply < plies; ply++)
+        {
+            final Piece plyPiece = (ply == 0) ? piece : preview[ply - 1];
+
+            // expand every board in the beam, in parallel if rateBoard() allows
+            if (this.getRateCost(board) > 0)
+            {
+                ExpandTask[] tasks = new ExpandTask[beamSize];
+                for (int i = 0; i < beamSize; i++)
+                {
+                    tasks[i] = new ExpandTask(this.beam[i], plyPiece, limitHeight);
+                }
+                ForkJoinTask.invokeAll(tasks);
+            }
+            else
+            {
+                for (int i = 0; i < beamSize; i++)
+                {
+                    this.beam[i].expand(plyPiece, limitHeight);
+                }
+            }
+
+            final int nextSize = this.selectNextBeam(beamSize, ply == 0);
+            if (nextSize == 0)
+            {
+                break;      // no board can take this piece; keep the last beam
+            }
+
+            State[] swap = this.beam;
+            this.beam = this.nextBeam;
+            this.nextBeam = swap;
+            beamSize = nextSize;
+        }
+
+        final State best = this.beam[0];
+        if (best.firstPiece == null)
+        {
+            return null;    // could not find a play at all!
+        }
+
+        if (move == null)
+        {
+            move = new Move();
+        }
+        move.set(best.firstX, best.firstY, best.firstPiece, best.score);
+        return move;
+    }
+
+    /**
+     * Returns SimpleBrain's cost of rating a play, since BeamBrain rates with
+     *      SimpleBrain's rateBoard(), or 0 for a subclass; see
+     *      SimpleBrain.getRateCost().
+     *
+     *  @param board    the board the plays are placed on
+     *  @return         the cost of rating one play, or 0 to never go parallel
+     */
+    @Override
+    protected int getRateCost(Board board)
+    {
+        if (this.getClass() != BeamBrain.class)
+        {
+            return 0;
+        }
+
+        return board.getWidth() + board.getMaxHeight();
+    }
+
+    /**
+     * Moves the best plays of the beam's boards into nextBeam, skipping plays
+     *      that leave a board already selected.
+     *
+     *  @param beamSize     the number of boards in the beam
+     *  @param first        true at the first ply, where each play is the first
+     *                          play of its line
+     *  @return the number of boards in the next beam
+     */
+    private int selectNextBeam(int beamSize, boolean first)
+    {
+        int nextSize = 0;
+        while (nextSize < this.width)
+        {
+            // the best play not taken yet; the first one in beam order on ties
+            State parent = null;
+            int play = -1;
+            for (int i = 0; i < beamSize; i++)
+            {
+                final State state = this.beam[i];
+                for (int j = 0; j < state.plays.count; j++)
+                {
+                    if (! state.plays.chosen[j] && (parent == null ||
+                            state.plays.scores[j] < parent.plays.scores[play]))
+                    {
+                        parent = state;
+                        play = j;
+                    }
+                }
+            }
+
+            if (parent == null)
+            {
+                break;      // every play has been taken
+            }
+            final Plays plays = parent.plays;
+            plays.chosen[play] = true;
+
+            boolean seen = false;
+            for (int k = 0; k < nextSize; k++)
+            {
+                seen = seen || this.nextBeam[k].board.getHash() == plays.hashes[play];
+            }
+
+            if (! seen)
+            {
+                State child = this.nextBeam[nextSize];
+                child.copyFrom(parent.board);
+                if (child.board.placeTrusted(plays.pieces[play], plays.xs[play],
+                        plays.ys[play]) != 0)
+                {
+                    child.board.clearRows();
+                }
+                child.board.commit();
+                child.score = plays.scores[play];
+                child.firstPiece = first ? plays.pieces[play] : parent.firstPiece;
+                child.firstX = first ? plays.xs[play] : parent.firstX;
+                child.firstY = first ? plays.ys[play] : parent.firstY;
+                nextSize++;
+            }
+        }
+
+        return nextSize;
+    }
+
+    public String toString()
+    {
+        return "Beam Brain";
+    }
+
+    /**
+     * A board in the beam, the first play of the line that led to it, and the
+     *      plays of the current ply's piece tried on it.
+     */
+    private class State
+    {
+        private Board board;
+        private double score;
+        private Piece firstPiece;
+        private int firstX;
+        private int firstY;
+
+        // the plays of the current ply's piece on this board; chosen marks
+        //  the ones taken into the next beam
+        private final Plays plays = new Plays();
+
+        /**
+         * Makes this state's board a copy of the given one, with no first play.
+         */
+        private void copyFrom(Board other)
+        {
+            if (this.board == null || this.board.getWidth() != other.getWidth() ||
+                    this.board.getHeight() != other.getHeight())
+            {
+                this.board = new Board(other);
+            }
+            else
+            {
+                this.board.copyFrom(other);
+            }
+            this.firstPiece = null;
+        }
+
+        /**
+         * Tries every play of the piece on this board, recording each play's
+         *      score and resulting hash. rateBoard() is called directly, not
+         *      through the rating cache, since boards are expanded in parallel.
+         */
+        private void expand(Piece piece, int limitHeight)
+        {
+            listPlays(this.board, piece, limitHeight, this.plays);
+            ratePlays(this.board, this.plays, false);
+        }
+    }
+
+    /**
+     * Expands one board of the beam; the boards of a ply are expanded at the
+     *      same time on the common pool.
+     */
+    @SuppressWarnings("serial")
+    private static class ExpandTask extends RecursiveAction
+    {
+        private final State state;
+        private final Piece piece;
+        private final int limitHeight;
+
+        ExpandTask(State state, Piece piece, int limitHeight)
+        {
+            this.state = state;
+            this.piece = piece;
+            this.limitHeight = limitHeight;
+        }
+
+        @Override
+        protected void compute()
+        {
+            this.state.expand(this.piece, this.limitHeight);
+        }
+    }
+}
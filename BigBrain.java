@@ -0,0 +1,90 @@
+/**
+ * A brain that rates boards with a FeatureEvaluator instead of SimpleBrain's
+ *      three fixed numbers: holes, blocks stacked over holes, holes deep in
+ *      the pile, troughs, transitions and heights, each with its own weight.
+ *  The weights come from the file named by the tetris.weights system
+ *      property, if it is set, or are the evaluator's defaults.
+ *  Moves are found as in SimpleBrain; only rateBoard() is different.
+ *
+ * @author agent
+ * @version 17 October 2026
+ */
+public class BigBrain extends SimpleBrain
+{
+    private FeatureEvaluator evaluator;
+
+    /**
+     * Creates a brain with the weights named by the tetris.weights system
+     *      property, or the default weights.
+     */
+    public BigBrain()
+    {
+        this(BigBrain.loadEvaluator(System.getProperty("tetris.weights")));
+    }
+
+    /**
+     * Creates a brain that rates boards with the given evaluator.
+     *
+     *  @param evaluator    the evaluator to rate boards with
+     */
+    public BigBrain(FeatureEvaluator evaluator)
+    {
+        this.evaluator = evaluator;
+    }
+
+    /**
+     * Returns the evaluator for a weights file name; null or "" means the
+     *      default weights.
+     */
+    private static FeatureEvaluator loadEvaluator(String fileName)
+    {
+        if (fileName == null || fileName.isEmpty())
+        {
+            return new FeatureEvaluator();
+        }
+
+        return FeatureEvaluator.load(fileName);
+    }
+
+    /**
+     * Returns the evaluator this brain rates boards with.
+     *
+     *  @return the evaluator
+     */
+    public FeatureEvaluator getEvaluator()
+    {
+        return this.evaluator;
+    }
+
+    /**
+     * Rates the board with the evaluator; lower is better.
+     *
+     *  @param board    the board to rate
+     *  @return the board's score
+     */
+    @Override
+    public double rateBoard(Board board)
+    {
+        return this.evaluator.evaluate(board);
+    }
+
+    /**
+     * Opts in to rating plays in parallel, since the evaluator can be used
+     *      from several threads at once. It visits every cell up to the max
+     *      height, so a rating costs about the board's width times its max
+     *      height.
+     *
+     *  @param board    the board the plays are placed on
+     *  @return         the cost of rating one play
+     */
+    @Override
+    protected int getRateCost(Board board)
+    {
+        return board.getWidth() * (board.getMaxHeight() + 1);
+    }
+
+    public String toString()
+    {
+        return "Big Brain";
+    }
+}
@@ -1,8 +1,13 @@
-import java.awt.Point;
+import java.util.Arrays;
+import java.util.SplittableRandom;
 
 /**
  * Represents a Tetris board -- essentially a 2D grid of booleans. Supports
  *      tetris pieces and row clearning.
+ *  The grid is stored as a bitboard: each row is packed into longs whose bits
+ *      are set where the blocks are filled. Collision tests, full row tests
+ *      and row clearing all work on whole words at a time, and any width
+ *      is supported.
  *  Has an "undo" feature that allows clients to add and remove pieces efficiently.
  *  Does not do any drawing or have any idea of pixels. Intead, just represents
  *      the abstract 2D board.
@@ -17,6 +22,10 @@ import java.awt.Point;
   * NB: The board is naturally organized into rows and columns. However, pieces
   *      are organized on an x-y coordinate system. The conversion between rows
   *      and columns and y and x values can be confusing. Be careful.
+  *
+  *  Each row is "words" longs, stored one row after another in rows[]: bit
+  *      (x % 64) of rows[y * words + x / 64] is the block at (x, y). The bits
+  *      past the width in the last word of a row are always 0.
   */
 
 
@@ -24,21 +33,104 @@ public class Board
 {
     private int width;
     private int height;
-    private boolean[][] grid;
+    private int words;          // the number of longs in each row
+    private long[] rows;
     private int[] rowWidths;
     private int[] colHeights;
     private int maxHeight;
 
-    // backup data structures to support undo
-    private boolean[][] gridBackup;
-    private int[] rowWidthsBackup;
-    private int[] colHeightsBackup;
-    private int maxHeightBackup;
+    /*
+     * Board features for brains, kept up to date by place() and clearRows()
+     *      so they can be read without scanning the grid:
+     *      colFills[x]     the number of filled blocks in column x
+     *      holes           the number of empty blocks below the column heights
+     *      bumpiness       the sum of |height(x) - height(x + 1)|
+     *      wellDepth       the sum of getWellDepth(x) over all columns
+     *      rowTransitions  the number of filled/empty changes along every row,
+     *                          counting the side walls as filled
+     */
+    private int[] colFills;
+    private int holes;
+    private int bumpiness;
+    private int wellDepth;
+    private int rowTransitions;
+
+    /*
+     * Zobrist hash of the grid: the XOR of a random key for every filled
+     *      block, where zobristKeys[row * keyStride + col] is the key of the
+     *      block at (col, row) and keyStride is the 64 bits of a row's words.
+     *      The keys come from a fixed seed, so equal grids hash the same on
+     *      every board of the same size. It is updated as blocks are placed and
+     *      rows are moved instead of being recomputed.
+     *  The keys are shared by all boards: sharedZobristKeys only grows, and
+     *      a longer table starts with the same keys as a shorter one.
+     */
+    private static final long ZOBRIST_SEED = 0x5DEECE66DL;
+    private static long[] sharedZobristKeys = new long[0];
+
+    private long[] zobristKeys;
+    private int keyStride;
+    private long hash;
+
+    /*
+     * Undo journal: place() and clearRows() record the old value of every row
+     *      mask, column height and fill, max height, hash and feature total
+     *      they overwrite, and undo() replays the entries newest first. A key
+     *      >= 0 is an index into rows[], a key < 0 is the column ~key (its
+     *      height and fill packed into one long), and the JOURNAL_ constants
+     *      are the scalars; pairs of int features are packed into one entry.
+     *      Row widths are not journaled since they are the bit count of the
+     *      restored row.
+     *  undo() rewinds the journal to undoMark, where the last place() began.
+     *      push() saves the journal size as a checkpoint and pop() rewinds to
+     *      it, so nested placements can be backed out without copying.
+     *  The journal is a reused pool: place() records each row and column under
+     *      the piece once and clearRows() records each row and column at
+     *      most once, so one place() and clearRows() never needs more than
+     *      2 * (height * words + width + 4) entries. The constructor
+     *      allocates that much, and the first push() to each checkpoint level
+     *      adds as much again, so after that nothing is allocated while
+     *      playing, and boards that only place and undo carry no room for
+     *      levels they never use. (Only repeated commit() calls inside a
+     *      push() can outgrow the pool, in which case it is doubled.)
+     */
+    private static final int JOURNAL_MAX_HEIGHT = Integer.MIN_VALUE;
+    private static final int JOURNAL_HASH = Integer.MIN_VALUE + 1;
+    private static final int JOURNAL_HOLES_TRANSITIONS = Integer.MIN_VALUE + 2;
+    private static final int JOURNAL_SURFACE = Integer.MIN_VALUE + 3;
+
+    public static final int DEFAULT_MAX_DEPTH = 8;
+
+    private int[] journalKeys;
+    private long[] journalValues;
+    private int journalSize;
+    private int journalLevel;   // entries a place() and a clearRows() can need
+    private int undoMark;
+    private int[] checkpoints;
+    private int depth;
 
     private boolean committed;
 
-	// set DEBUG to true while developing the lab to enable sanity checks
-    private boolean DEBUG = true;
+    /*
+     * How much checking sanityCheck() does after each place(), clearRows(),
+     *      undo() and pop():
+     *      CHECK_OFF       none
+     *      CHECK_CHEAP     O(width) invariants on the column heights
+     *      CHECK_SAMPLED   the full check once every checkInterval operations
+     *      CHECK_FULL      recount every row and column (the lab default)
+     *  The default comes from the "tetris.board.check" system property (off,
+     *      cheap, sampled or full) and "tetris.board.checkInterval".
+     */
+    public static final int CHECK_OFF = 0;
+    public static final int CHECK_CHEAP = 1;
+    public static final int CHECK_SAMPLED = 2;
+    public static final int CHECK_FULL = 3;
+
+    public static final int DEFAULT_CHECK_INTERVAL = 1000;
+
+    private int checkLevel;
+    private int checkInterval;
+    private int checkCountdown;
 
     /**
      * Creates an empty board of the given width and height measured in blocks.
@@ -48,20 +140,182 @@ public class Board
      */
     public Board(int initialWidth, int initialHeight)
     {
+        this(initialWidth, initialHeight, DEFAULT_MAX_DEPTH);
+    }
+
+    /**
+     * Creates an empty board of the given width and height measured in blocks
+     *      that supports up to the given number of nested push() checkpoints.
+     * 
+     * @param initialWidth  width of this board in units of blocks
+     * @param initialHeight height of this board in units of blocks
+     * @param maxDepth      the maximum number of outstanding push() calls
+     */
+    public Board(int initialWidth, int initialHeight, int maxDepth)
+    {
+        this(initialWidth, initialHeight, maxDepth, Board.defaultCheckLevel());
+    }
+
+    /**
+     * Creates an empty board of the given width and height measured in blocks
+     *      that supports up to the given number of nested push() checkpoints
+     *      and does the given level of sanity checking.
+     * 
+     * @param initialWidth  width of this board in units of blocks
+     * @param initialHeight height of this board in units of blocks
+     * @param maxDepth      the maximum number of outstanding push() calls
+     * @param checkLevel    one of CHECK_OFF, CHECK_CHEAP, CHECK_SAMPLED or
+     *                          CHECK_FULL
+     */
+    public Board(int initialWidth, int initialHeight, int maxDepth, int checkLevel)
+    {
+        if(checkLevel < CHECK_OFF || checkLevel > CHECK_FULL)
+        {
+            throw new IllegalArgumentException("bad check level: " + checkLevel);
+        }
+
+        if(initialWidth < 1 || initialHeight < 1)
+        {
+            throw new IllegalArgumentException("bad board size: " +
+                    initialWidth + " x " + initialHeight);
+        }
+
         this.width = initialWidth;
         this.height = initialHeight;
+        this.words = (this.width + 63) >>> 6;
 
-        this.grid = new boolean[this.height][this.width];
+        this.rows = new long[this.height * this.words];
         this.rowWidths = new int[this.height];
         this.colHeights = new int[this.width];
         this.maxHeight = 0;
 
-        this.gridBackup = new boolean[this.height][this.width];
-        this.rowWidthsBackup = new int[this.height];
-        this.colHeightsBackup = new int[this.width];
-        this.maxHeightBackup = 0;
+        this.keyStride = 64 * this.words;
+        this.zobristKeys = Board.zobristKeys(this.height * this.keyStride);
+        this.hash = 0;
+
+        this.colFills = new int[this.width];
+        this.holes = 0;
+        this.bumpiness = 0;
+        this.wellDepth = this.surfaceWellDepth(0, this.width - 1);
+        this.rowTransitions = 2 * this.height;
+
+        // enough for a place() followed by a clearRows(); push() adds room
+        //      for another one per checkpoint level, so boards that never
+        //      push stay small
+        this.journalLevel = 2 * (this.height * this.words + this.width + 4);
+        this.journalKeys = new int[this.journalLevel];
+        this.journalValues = new long[this.journalLevel];
+        this.journalSize = 0;
+        this.undoMark = 0;
+        this.checkpoints = new int[maxDepth];
+        this.depth = 0;
+
+        this.committed = true;
+
+        this.checkLevel = checkLevel;
+        this.checkInterval = Integer.getInteger("tetris.board.checkInterval",
+                DEFAULT_CHECK_INTERVAL);
+        this.checkCountdown = this.checkInterval;
+    }
+
+    /**
+     * Creates a copy of the given board with the same size, maximum push()
+     *      depth and check level. See copyFrom().
+     * 
+     * @param other the board to copy
+     */
+    public Board(Board other)
+    {
+        this(other.width, other.height, other.checkpoints.length, other.checkLevel);
+        this.copyFrom(other);
+    }
+
+    /**
+     * Makes this board a copy of the current blocks of another board of the
+     *      same size, leaving it committed with nothing to undo or pop.
+     *  The grid is one contiguous array of row masks, so this is a single bulk
+     *      copy of the rows plus a copy of the per-row and per-column counts;
+     *      nothing is allocated. Search code can keep a pool of boards and
+     *      refill them with this instead of creating new ones.
+     *  
+     *  @param other    the board to copy; must have the same width and height
+     */
+    public void copyFrom(Board other)
+    {
+        if(other.width != this.width || other.height != this.height)
+        {
+            throw new IllegalArgumentException("board sizes differ");
+        }
+
+        System.arraycopy(other.rows, 0, this.rows, 0, this.rows.length);
+        System.arraycopy(other.rowWidths, 0, this.rowWidths, 0, this.height);
+        System.arraycopy(other.colHeights, 0, this.colHeights, 0, this.width);
+        System.arraycopy(other.colFills, 0, this.colFills, 0, this.width);
+        this.maxHeight = other.maxHeight;
+        this.hash = other.hash;
+        this.holes = other.holes;
+        this.bumpiness = other.bumpiness;
+        this.wellDepth = other.wellDepth;
+        this.rowTransitions = other.rowTransitions;
 
+        this.journalSize = 0;
+        this.undoMark = 0;
+        this.depth = 0;
         this.committed = true;
+
+        sanityCheck();
+    }
+
+    /**
+     * Returns the shared table of Zobrist keys, with at least the given number
+     *      of keys.
+     */
+    private static synchronized long[] zobristKeys(int length)
+    {
+        if(Board.sharedZobristKeys.length < length)
+        {
+            long[] keys = new long[length];
+            SplittableRandom random = new SplittableRandom(ZOBRIST_SEED);
+            for(int i = 0; i < keys.length; i++)
+            {
+                keys[i] = random.nextLong();
+            }
+            Board.sharedZobristKeys = keys;
+        }
+
+        return Board.sharedZobristKeys;
+    }
+
+    /**
+     * Returns the check level named by the "tetris.board.check" system
+     *      property, or CHECK_FULL if it is not set.
+     */
+    private static int defaultCheckLevel()
+    {
+        String level = System.getProperty("tetris.board.check", "full");
+        switch (level)
+        {
+            case "off":
+                return CHECK_OFF;
+            case "cheap":
+                return CHECK_CHEAP;
+            case "sampled":
+                return CHECK_SAMPLED;
+            case "full":
+                return CHECK_FULL;
+            default:
+                throw new IllegalArgumentException("bad tetris.board.check: " + level);
+        }
+    }
+
+    /**
+     * Returns the level of sanity checking this board does.
+     * 
+     * @return one of CHECK_OFF, CHECK_CHEAP, CHECK_SAMPLED or CHECK_FULL
+     */
+    public int getCheckLevel()
+    {
+        return this.checkLevel;
     }
 
     /**
@@ -95,6 +349,91 @@ public class Board
         return this.maxHeight;
     }
 
+    /**
+     * Returns a 64-bit Zobrist hash of the filled blocks in the board.
+     *  Boards with the same blocks filled have the same hash, so it can key
+     *      transposition tables and evaluation caches.
+     *      Different boards almost never share a hash, but it is possible.
+     *  The hash is kept up to date incrementally, so this is O(1).
+     *  
+     *  @return the hash of the filled blocks in the board
+     */
+    public long getHash()
+    {
+        return this.hash;
+    }
+
+    /**
+     * Returns the number of empty blocks in the given column that are below
+     *      its column height -- i.e. covered by some block above them.
+     *  
+     *  @param col  the specified column
+     *  @return the number of holes in the specified column
+     */
+    public int getColumnHoles(int col)
+    {
+        return this.colHeights[col] - this.colFills[col];
+    }
+
+    /**
+     * Returns the total number of holes in all the columns. O(1).
+     * 
+     * @return the total number of holes in the board
+     */
+    public int getHoles()
+    {
+        return this.holes;
+    }
+
+    /**
+     * Returns the sum of the absolute differences between the heights of each
+     *      pair of neighboring columns. O(1).
+     * 
+     * @return the bumpiness of the board's surface
+     */
+    public int getBumpiness()
+    {
+        return this.bumpiness;
+    }
+
+    /**
+     * Returns how far the given column is below the lower of its two
+     *      neighbors, or 0 if it is not below both. The sides of the board
+     *      count as neighbors as tall as the board.
+     * 
+     * @param col   the specified column
+     * @return the depth of the well at the specified column
+     */
+    public int getWellDepth(int col)
+    {
+        final int left = (col == 0) ? this.height : this.colHeights[col - 1];
+        final int right = (col == this.width - 1) ? this.height : this.colHeights[col + 1];
+        return Math.max(0, Math.min(left, right) - this.colHeights[col]);
+    }
+
+    /**
+     * Returns the sum of getWellDepth() over all the columns. O(1).
+     * 
+     * @return the total depth of the wells in the board
+     */
+    public int getTotalWellDepth()
+    {
+        return this.wellDepth;
+    }
+
+    /**
+     * Returns the number of times neighboring blocks along a row change between
+     *      filled and empty, summed over every row. The sides of the board
+     *      count as filled, so an empty row has 2 transitions and a full row
+     *      has none. O(1).
+     * 
+     * @return the total number of row transitions in the board
+     */
+    public int getRowTransitions()
+    {
+        return this.rowTransitions;
+    }
+
     /**
      * Given a piece and a column, returns the row value where the bottom of the
      *      piece would come to rest if its left edge were dropped straight down
@@ -123,6 +462,47 @@ public class Board
         return maxRow;
     }
 
+    /**
+     * Computes dropHeight() for every column the piece fits in at once.
+     *  heights[x] is set to the row where the bottom of the piece would come to
+     *      rest if its left edge were dropped at column x, for each x from 0 to
+     *      getWidth() - piece.getWidth().
+     *      
+     *  Implementation:
+     *      The loops are swapped relative to dropHeight(): the outer loop is
+     *          over the skirt and the inner loop is a branch-free running max
+     *          over a contiguous run of column heights, which the JIT can
+     *          unroll and vectorize.
+     *  
+     *  @param piece    the piece that will be dropped
+     *  @param heights  filled with the landing row for each column; must have
+     *                      at least getWidth() - piece.getWidth() + 1 elements
+     *  @return the number of columns filled in, or 0 if the piece is wider than
+     *      the board
+     */
+    public int dropHeights(Piece piece, int[] heights)
+    {
+        final int[] skirt = piece.getSkirt();
+        final int[] colHeights = this.colHeights;
+        final int count = this.getWidth() - skirt.length + 1;
+        if(count <= 0)
+        {
+            return 0;
+        }
+
+        Arrays.fill(heights, 0, count, 0);
+        for(int i = 0; i < skirt.length; i++)
+        {
+            final int skirtRow = skirt[i];
+            for(int x = 0; x < count; x++)
+            {
+                heights[x] = Math.max(heights[x], colHeights[x + i] - skirtRow);
+            }
+        }
+
+        return count;
+    }
+
     /**
      * Returns the height of the specified column -- i.e. the row value of the
      *      highest block + 1.
@@ -157,12 +537,20 @@ public class Board
      */
     public boolean getGrid(int col, int row)
     {
-        if(col < 0 || col > this.getWidth() || row < 0 || row > this.getHeight())
+        if(col < 0 || col >= this.getWidth() || row < 0 || row >= this.getHeight())
         {
             return true;
         }
 
-        return this.grid[row][col];
+        return this.isFilled(col, row);
+    }
+
+    /**
+     * Returns true if the given block, which must be in the board, is filled.
+     */
+    private boolean isFilled(int col, int row)
+    {
+        return (this.rows[row * this.words + (col >>> 6)] & (1L << col)) != 0;
     }
 
     public static final int PLACE_OK = 0;
@@ -195,18 +583,9 @@ public class Board
         // place cannot be invoked on a board that has not been committed
         assert(this.committed);
 
-        // backup the current state of the board
+        // undo() rewinds to here; nothing is recorded until something changes
         this.committed = false;
-        for(int row = 0; row < this.getHeight(); row++)
-        {
-            System.arraycopy(this.grid[row], 0, this.gridBackup[row],
-                    0, this.grid[row].length);
-        }
-        System.arraycopy(this.rowWidths, 0, this.rowWidthsBackup,
-                0, this.rowWidths.length);
-        System.arraycopy(this.colHeights, 0, this.colHeightsBackup,
-                0, this.colHeights.length);
-        this.maxHeightBackup = this.maxHeight;
+        this.undoMark = this.journalSize;
 
         // check for out of bounds
         if(placeCol + piece.getWidth() > getWidth() ||
@@ -216,46 +595,36 @@ public class Board
             return PLACE_OUT_BOUNDS;
         }
 
+        this.beginPlacement(piece, placeCol, placeRow);
+
         /*
          * for each point in the piece's body:
          *      check if it collides with another piece,
-         *      update the row widths,
-         *      update the column height (potentially),
-         *      update the max height (potentially)
+         *      fill in the block
          */
          
-        for(Point pt : piece.getBody())
+        final int[] xs = piece.getXs();
+        final int[] ys = piece.getYs();
+        for(int i = 0; i < xs.length; i++)
         {
-            int pointCol = placeCol + pt.x;
-            int pointRow = placeRow + pt.y;
+            int pointCol = placeCol + xs[i];
+            int pointRow = placeRow + ys[i];
 
-            if(grid[pointRow][pointCol])
+            if(this.isFilled(pointCol, pointRow))
             {
                 status = PLACE_BAD;
             }
             else
             {
-                grid[pointRow][pointCol] = true;
-                this.rowWidths[pointRow]++;
-                if(pointRow + 1 > this.colHeights[pointCol])
-                {
-                    this.colHeights[pointCol] = pointRow + 1;
-                }
-                
-                if(pointRow + 1 > this.getMaxHeight())
-                {
-                    this.maxHeight = pointRow + 1;
-                }
+                this.fill(pointCol, pointRow);
             }
         }
 
         // check for completed rows
-        for(int i = 0; i < piece.getHeight() && status == PLACE_OK; i++)
+        final int filledRows = this.endPlacement(piece, placeCol, placeRow);
+        if(status == PLACE_OK && filledRows != 0)
         {
-            if(this.getRowWidth(placeRow + i) == this.getWidth())
-            {
-                status = PLACE_ROW_FILLED;
-            }
+            status = PLACE_ROW_FILLED;
         }
         
         sanityCheck();
@@ -264,203 +633,867 @@ public class Board
     }
 
     /**
-     * Deletes rows that are filled all the way across, moving blocks above down.
-     * 	Returns true if any row clearing happened.
-     * 
-     * Implementation hints:
-     *      This is complicated.
-     *      Ideally, you want to copy each row down to its correct location in one pass.
-     *      Note that more than one row may be filled.
-     *		Remember to update the column heights and max height if needed.
+     * Adds the body of a piece to the board without any checking -- a fast path
+     *      for brains.
+     *  The caller guarantees that the piece is in bounds and does not collide
+     *      with any blocks, as is the case for a row obtained from
+     *      dropHeight() or dropHeights() that leaves the top of the piece
+     *      within the board. Placing a piece that breaks this corrupts the
+     *      board (it is only caught by assertions and sanity checks).
+     *  Otherwise this behaves like place(): the board must be committed, and
+     *      undo() removes the piece.
      *      
-     *  @return true if any row clearing happened
+     *  @param piece    the piece to place its lower-left corner at the
+     *                      specified column and row
+     *  @return a bit mask of the rows that are now filled -- bit i is set if
+     *      row placeRow + i is filled -- so the caller only needs clearRows()
+     *      if it is not 0 (pieces are assumed to be at most 32 rows tall)
      */
-    public boolean clearRows()
+    public int placeTrusted(Piece piece, int placeCol, int placeRow)
     {
-        int toRow = -1;
-        int fromRow = 0;
-        int maxHeightAdj = 0;
-
-        // find the first filled row
-        for(int row = 0; row < this.getHeight(); row++)
-        {
-            if(this.getRowWidth(row) == this.getWidth())
-            {
-                toRow = row;
-                fromRow = toRow + 1;
-                maxHeightAdj++;
-
-                // find the next unfilled row
-                while(fromRow < this.getMaxHeight() &&
-                        this.getRowWidth(fromRow) == this.getWidth())
-                {
-                    fromRow++;
-                    maxHeightAdj++;
-                }
+        // place cannot be invoked on a board that has not been committed
+        assert(this.committed);
+        assert(placeCol >= 0 && placeRow >= 0 &&
+                placeCol + piece.getWidth() <= getWidth() &&
+                placeRow + piece.getHeight() <= getHeight());
 
-                break;
-            }
-        }
+        this.committed = false;
+        this.undoMark = this.journalSize;
 
-        if(toRow == -1)
-        {
-            sanityCheck();
-            return false;
-        }
+        this.beginPlacement(piece, placeCol, placeRow);
 
-        // if there is a row to clear...
-        
-        while(fromRow < this.getMaxHeight())
+        // or each row of the piece into the board a word at a time
+        final long[] rowMasks = piece.getRowMasks();
+        for(int i = 0; i < rowMasks.length; i++)
         {
-            this.grid[toRow] = this.grid[fromRow];
-            this.rowWidths[toRow] = this.rowWidths[fromRow];
-            toRow++;
-            fromRow++;
-
-            // find the next unfilled row
-            while(fromRow < this.getMaxHeight() &&
-                    this.getRowWidth(fromRow) == this.getWidth())
+            final int row = placeRow + i;
+            final int index = row * this.words + (placeCol >>> 6);
+            final int shift = placeCol & 63;
+            final long low = rowMasks[i] << shift;
+            final long high = (shift == 0) ? 0 : rowMasks[i] >>> (64 - shift);
+            assert((this.rows[index] & low) == 0);
+            this.rows[index] |= low;
+            if(high != 0)
             {
-                fromRow++;
-                maxHeightAdj++;
+                assert((this.rows[index + 1] & high) == 0);
+                this.rows[index + 1] |= high;
             }
+            this.rowWidths[row] += Long.bitCount(rowMasks[i]);
         }
 
-        // copy blank rows
-        for( ; toRow < this.getHeight(); toRow++)
+        final int[] xs = piece.getXs();
+        final int[] ys = piece.getYs();
+        for(int i = 0; i < xs.length; i++)
         {
-            this.grid[toRow] = new boolean[this.getWidth()];
-            this.rowWidths[toRow] = 0;
+            this.colFills[placeCol + xs[i]]++;
+            this.hash ^= this.zobristKeys[(placeRow + ys[i]) * this.keyStride + placeCol + xs[i]];
         }
 
-        // update column heights
-        for( int col = 0; col < this.getWidth(); col++)
+        final int[] top = piece.getTop();
+        for(int i = 0; i < top.length; i++)
         {
-            while(this.colHeights[col] > 0 &&
-                    ! this.grid[this.colHeights[col] - 1][col])
-            {
-                this.colHeights[col]--;
-            }
+            this.colHeights[placeCol + i] = Math.max(this.colHeights[placeCol + i],
+                    placeRow + top[i]);
         }
+        this.maxHeight = Math.max(this.maxHeight, placeRow + piece.getHeight());
 
-        // update max height
-        this.maxHeight -= maxHeightAdj;
+        final int filledRows = this.endPlacement(piece, placeCol, placeRow);
         
         sanityCheck();
 
-        return true;
+        return filledRows;
     }
-    
+
     /**
-     * If a place() happens, optionally followed by a clearRows(), a subsequent
-     *      undo() reverts the board to its state before the place(). If the
-     *      conditions for undo() are not met, such as calling undo() twice in a
-     *      row, then the second undo() does nothing.
-     *  See the lab document.
+     * Works out what placing a piece would do to the board without changing it:
+     *      the resulting column heights, the number of rows cleared, the max
+     *      height and the holes, as if place() and clearRows() had been called.
+     *      The results are passed to the sink; see FeatureSink.
+     *  The placement must be one that placeTrusted() accepts -- in bounds and
+     *      not colliding with any blocks.
+     *  Since nothing is written, any number of threads can evaluate placements
+     *      against the same board at once, as long as none of them changes it.
+     *  Nothing is allocated, and the piece is read through its row masks and
+     *      top profile, so the cost is O(width + piece size) when no rows are
+     *      cleared.
+     *  Under CHECK_FULL, and only then, the results are also checked against
+     *      placing the piece and clearing rows on a new copy of the board.
+     *  
+     *  @param piece    the piece to place its lower-left corner at the
+     *                      specified column and row
+     *  @param sink     receives the resulting features
      */
-    public void undo()
+    public void evaluatePlacement(Piece piece, int placeCol, int placeRow, FeatureSink sink)
     {
-        if(! this.committed)
-        {
-            int[] tempHeights = this.colHeights;
-            this.colHeights = this.colHeightsBackup;
-            this.colHeightsBackup = tempHeights;
+        assert(placeCol >= 0 && placeRow >= 0 &&
+                placeCol + piece.getWidth() <= getWidth() &&
+                placeRow + piece.getHeight() <= getHeight());
 
-            int[] tempWidths = this.rowWidths;
-            this.rowWidths = this.rowWidthsBackup;
-            this.rowWidthsBackup = tempWidths;
+        final long[] rowMasks = piece.getRowMasks();
+        final int[] pieceTop = piece.getTop();
+        final Board placed = (this.checkLevel == CHECK_FULL) ?
+                this.placedCopy(piece, placeCol, placeRow) : null;
 
-            for(int row = 0; row < this.getHeight(); row++)
+        // find the rows the piece would fill
+        int clearedRows = 0;
+        int rowsCleared = 0;
+        for(int i = 0; i < piece.getHeight(); i++)
+        {
+            if(this.rowWidths[placeRow + i] + Long.bitCount(rowMasks[i]) == this.width)
             {
-                boolean[] tempRow = this.grid[row];
-                this.grid[row] = this.gridBackup[row];
-                this.gridBackup[row] = tempRow;
+                clearedRows |= 1 << i;
+                rowsCleared++;
             }
-
-            this.maxHeight = this.maxHeightBackup;
-
-            this.committed = true;
         }
-        
-        sanityCheck();
-    }
-
-    /**
-     * Puts the board in the committed state.
-     * See the overview docs.
-     */
-    public void commit()
-    {
-        this.committed = true;
-    }
 
-    /**
-     * Checks the board for internal consistency -- used for debugging.
-     */
-    public void sanityCheck()
-    {
-        if (DEBUG)
+        // blocks after the placement: every cleared row takes a full row away
+        int blocks = piece.getXs().length - rowsCleared * this.width;
+        int sumHeight = 0;
+        int maxHeight = 0;
+        for(int col = 0; col < this.width; col++)
         {
-            if(this.grid.length != this.getHeight())
-            {
-                throw new RuntimeException("grid height != board height");
-            }
+            blocks += this.colFills[col];
 
-            if(this.grid[0].length != this.getWidth())
+            // the height before clearing
+            int top = this.colHeights[col];
+            if(col >= placeCol && col < placeCol + piece.getWidth())
             {
-                throw new RuntimeException("grid width != board width");
+                top = Math.max(top, placeRow + pieceTop[col - placeCol]);
             }
 
-            // check row widths
-            for(int row = 0; row < this.getHeight(); row++)
+            // walk down past cleared rows and empty blocks to the top block
+            //      that survives, then drop it by the cleared rows below it
+            int height = top;
+            if(rowsCleared != 0)
             {
-                int width = 0;
-                for(int col = 0; col < this.getWidth(); col++)
+                int row = top - 1;
+                while(row >= 0)
                 {
-                    if(this.grid[row][col])
+                    final int i = row - placeRow;
+                    if(i >= 0 && i < piece.getHeight())
                     {
-                        width++;
+                        if((clearedRows & (1 << i)) == 0 && (this.isFilled(col, row) ||
+                                (col >= placeCol && col < placeCol + piece.getWidth() &&
+                                ((rowMasks[i] >>> (col - placeCol)) & 1) != 0)))
+                        {
+                            break;
+                        }
                     }
-                }
-
-                if(this.rowWidths[row] != width)
-                {
-                    throw new RuntimeException("row widths inconsistent");
-                }
-            }
-
-            // check column heights
-            for(int col = 0; col < this.getWidth(); col++)
-            {
-                int height = 0;
-                for(int row = 0; row < this.getHeight(); row++)
-                {
-                    if(this.grid[row][col])
+                    else if(this.isFilled(col, row))
                     {
-                        height = row + 1;
+                        break;
                     }
+                    row--;
                 }
 
-                if(this.colHeights[col] != height)
-                {
-                    throw new RuntimeException("column heights inconsistent");
-                }
+                final int below = Math.max(0, Math.min(row - placeRow, piece.getHeight()));
+                height = row + 1 - Integer.bitCount(clearedRows & ((1 << below) - 1));
             }
 
-            // check max height
-            int maxHeight = 0; 
-            for(int col = 0; col < this.getWidth(); col++)
+            if(placed != null && placed.colHeights[col] != height)
             {
-                if(this.getColumnHeight(col) > maxHeight)
-                {
-                    maxHeight = this.getColumnHeight(col);
-                }
+                throw new RuntimeException("evaluated column heights inconsistent");
             }
+            sink.columnHeight(col, height);
+            sumHeight += height;
+            maxHeight = Math.max(maxHeight, height);
+        }
 
-            if(this.getMaxHeight() != maxHeight)
-            {
-                throw new RuntimeException("max height inconsistent");
-            }
+        final int holes = sumHeight - blocks;
+        if(placed != null && (placed.maxHeight != maxHeight || placed.holes != holes ||
+                placed.blockCount() != this.blockCount() + piece.getXs().length -
+                rowsCleared * this.width))
+        {
+            throw new RuntimeException("evaluated placement inconsistent");
+        }
+        sink.placement(rowsCleared, maxHeight, holes, holes - this.holes);
+    }
+
+    /**
+     * Returns an unchecked copy of the board with the piece placed and the
+     *      rows cleared, for checking evaluatePlacement().
+     */
+    private Board placedCopy(Piece piece, int placeCol, int placeRow)
+    {
+        Board placed = new Board(this.width, this.height, 0, CHECK_OFF);
+        placed.copyFrom(this);
+        placed.placeTrusted(piece, placeCol, placeRow);
+        placed.clearRows();
+
+        return placed;
+    }
+
+    /**
+     * Returns the number of filled blocks in the board.
+     */
+    private int blockCount()
+    {
+        int blocks = 0;
+        for(int col = 0; col < this.width; col++)
+        {
+            blocks += this.colFills[col];
+        }
+
+        return blocks;
+    }
+
+    /**
+     * Journals each row and column under a piece about to be placed, once
+     *      before changing them, and takes their current terms out of the
+     *      feature totals.
+     */
+    private void beginPlacement(Piece piece, int placeCol, int placeRow)
+    {
+        this.journal(JOURNAL_MAX_HEIGHT, this.maxHeight);
+        this.journal(JOURNAL_HASH, this.hash);
+        this.journal(JOURNAL_HOLES_TRANSITIONS, pack(this.holes, this.rowTransitions));
+        this.journal(JOURNAL_SURFACE, pack(this.bumpiness, this.wellDepth));
+        for(int i = 0; i < piece.getHeight(); i++)
+        {
+            this.journalRow(placeRow + i);
+            this.rowTransitions -= this.rowTransitions(placeRow + i);
+        }
+        for(int i = 0; i < piece.getWidth(); i++)
+        {
+            final int col = placeCol + i;
+            this.journal(~col, pack(this.colHeights[col], this.colFills[col]));
+            this.holes -= this.colHeights[col] - this.colFills[col];
+        }
+        
+        // the neighbors on either side are in the surface features too
+        this.bumpiness -= this.surfaceBumpiness(placeCol - 1, placeCol + piece.getWidth());
+        this.wellDepth -= this.surfaceWellDepth(placeCol - 1, placeCol + piece.getWidth());
+    }
+
+    /**
+     * Fills in an empty block: updates the row width, column fill, hash,
+     *      column height and max height.
+     */
+    private void fill(int col, int row)
+    {
+        this.rows[row * this.words + (col >>> 6)] |= 1L << col;
+        this.rowWidths[row]++;
+        this.colFills[col]++;
+        this.hash ^= this.zobristKeys[row * this.keyStride + col];
+        if(row + 1 > this.colHeights[col])
+        {
+            this.colHeights[col] = row + 1;
+        }
+
+        if(row + 1 > this.maxHeight)
+        {
+            this.maxHeight = row + 1;
+        }
+    }
+
+    /**
+     * Puts the new terms of the rows and columns under a placed piece back
+     *      into the feature totals.
+     *  
+     *  @return a bit mask of the rows under the piece that are filled
+     */
+    private int endPlacement(Piece piece, int placeCol, int placeRow)
+    {
+        int filledRows = 0;
+        for(int i = 0; i < piece.getHeight(); i++)
+        {
+            this.rowTransitions += this.rowTransitions(placeRow + i);
+            if(this.rowWidths[placeRow + i] == this.width)
+            {
+                filledRows |= 1 << i;
+            }
+        }
+        for(int i = 0; i < piece.getWidth(); i++)
+        {
+            final int col = placeCol + i;
+            this.holes += this.colHeights[col] - this.colFills[col];
+        }
+        this.bumpiness += this.surfaceBumpiness(placeCol - 1, placeCol + piece.getWidth());
+        this.wellDepth += this.surfaceWellDepth(placeCol - 1, placeCol + piece.getWidth());
+
+        return filledRows;
+    }
+
+    /**
+     * Deletes rows that are filled all the way across, moving blocks above down.
+     * 	Returns true if any row clearing happened.
+     * 
+     * Implementation:
+     *      A full row is simply a row whose width equals the board width, so
+     *          the rows are compacted down in a single pass over the row array,
+     *          skipping the full ones, and the vacated rows at the top are
+     *          zeroed.
+     *      
+     *  @return true if any row clearing happened
+     */
+    public boolean clearRows()
+    {
+        final int oldMaxHeight = this.getMaxHeight();
+
+        // find the first filled row
+        int toRow = 0;
+        while(toRow < oldMaxHeight && this.rowWidths[toRow] != this.width)
+        {
+            toRow++;
+        }
+
+        if(toRow == oldMaxHeight)
+        {
+            sanityCheck();
+            return false;
+        }
+
+        // only the rows from the first filled row up can change
+        final int firstRow = toRow;
+        final boolean journaling = this.isJournaling();
+        if(journaling)
+        {
+            this.journal(JOURNAL_MAX_HEIGHT, oldMaxHeight);
+            this.journal(JOURNAL_HASH, this.hash);
+            this.journal(JOURNAL_HOLES_TRANSITIONS, pack(this.holes, this.rowTransitions));
+            this.journal(JOURNAL_SURFACE, pack(this.bumpiness, this.wellDepth));
+            for(int row = firstRow; row < oldMaxHeight; row++)
+            {
+                this.journalRow(row);
+            }
+        }
+
+        // remove the moving rows from the hash, and add them back once moved
+        for(int row = firstRow; row < oldMaxHeight; row++)
+        {
+            this.hash ^= this.rowHash(row);
+        }
+
+        // copy each unfilled row down to its final location
+        for(int fromRow = toRow + 1; fromRow < oldMaxHeight; fromRow++)
+        {
+            if(this.rowWidths[fromRow] != this.width)
+            {
+                for(int word = 0; word < this.words; word++)
+                {
+                    this.rows[toRow * this.words + word] = this.rows[fromRow * this.words + word];
+                }
+                this.rowWidths[toRow] = this.rowWidths[fromRow];
+                toRow++;
+            }
+        }
+
+        for(int row = firstRow; row < toRow; row++)
+        {
+            this.hash ^= this.rowHash(row);
+        }
+
+        // blank the rows that were vacated at the top
+        Arrays.fill(this.rows, toRow * this.words, oldMaxHeight * this.words, 0);
+        Arrays.fill(this.rowWidths, toRow, oldMaxHeight, 0);
+
+        // every cleared full row becomes an empty row at the top, taking
+        //      away no transitions and adding the 2 of an empty row
+        final int cleared = oldMaxHeight - toRow;
+        this.rowTransitions += 2 * cleared;
+
+        // update column heights, fills, holes and max height; every column
+        //      loses one block per cleared row
+        this.maxHeight = 0;
+        this.holes = 0;
+        for(int col = 0; col < this.getWidth(); col++)
+        {
+            int colHeight = Math.min(this.colHeights[col], toRow);
+            while(colHeight > 0 && ! this.isFilled(col, colHeight - 1))
+            {
+                colHeight--;
+            }
+
+            if(journaling)
+            {
+                this.journal(~col, pack(this.colHeights[col], this.colFills[col]));
+            }
+            this.colHeights[col] = colHeight;
+            this.colFills[col] -= cleared;
+            this.holes += colHeight - this.colFills[col];
+            if(colHeight > this.maxHeight)
+            {
+                this.maxHeight = colHeight;
+            }
+        }
+
+        this.bumpiness = this.surfaceBumpiness(0, this.width - 1);
+        this.wellDepth = this.surfaceWellDepth(0, this.width - 1);
+        
+        sanityCheck();
+
+        return true;
+    }
+    
+    /**
+     * If a place() happens, optionally followed by a clearRows(), a subsequent
+     *      undo() reverts the board to its state before the place(). If the
+     *      conditions for undo() are not met, such as calling undo() twice in a
+     *      row, then the second undo() does nothing.
+     *  Only the rows and columns that were changed are restored, by replaying
+     *      the undo journal newest entry first.
+     *  See the lab document.
+     */
+    public void undo()
+    {
+        if(! this.committed)
+        {
+            this.rewind(this.undoMark);
+            this.committed = true;
+        }
+        
+        sanityCheck();
+    }
+
+    /**
+     * Puts the board in the committed state.
+     *  Inside a push() the committed changes can still be reverted by pop().
+     * See the overview docs.
+     */
+    public void commit()
+    {
+        if(this.depth == 0)
+        {
+            this.journalSize = 0;
+        }
+        this.committed = true;
+    }
+
+    /**
+     * Saves a checkpoint of the current board that a later pop() returns to.
+     *  A pending place() (and clearRows()) is kept, as if commit() had been
+     *      called, and the board is left in the committed state so the next
+     *      piece can be placed. Checkpoints nest up to the maximum depth given
+     *      to the constructor, so a search can play several pieces in a row and
+     *      back them all out again without copying the board.
+     */
+    public void push()
+    {
+        if(this.depth == this.checkpoints.length)
+        {
+            throw new RuntimeException("checkpoint depth exceeded: " + this.depth);
+        }
+
+        // the first time a level is reached, make room for play at it
+        final int capacity = (this.depth + 2) * this.journalLevel;
+        if(this.journalKeys.length < capacity)
+        {
+            this.journalKeys = Arrays.copyOf(this.journalKeys, capacity);
+            this.journalValues = Arrays.copyOf(this.journalValues, capacity);
+        }
+
+        this.checkpoints[this.depth] = this.journalSize;
+        this.depth++;
+        this.committed = true;
+    }
+
+    /**
+     * Reverts the board to its state at the matching push(), discarding every
+     *      placement and row clearing since then. The board is left in the
+     *      committed state.
+     */
+    public void pop()
+    {
+        if(this.depth == 0)
+        {
+            throw new RuntimeException("pop() without a matching push()");
+        }
+
+        this.depth--;
+        this.rewind(this.checkpoints[this.depth]);
+        if(this.depth == 0)
+        {
+            this.journalSize = 0;
+        }
+        this.committed = true;
+        
+        sanityCheck();
+    }
+
+    /**
+     * Returns the number of push() checkpoints that have not been popped.
+     * 
+     * @return the number of outstanding push() checkpoints
+     */
+    public int getDepth()
+    {
+        return this.depth;
+    }
+
+    /**
+     * Returns the number of push() checkpoints the board can hold at once.
+     * 
+     * @return the maximum number of outstanding push() checkpoints
+     */
+    public int getMaxDepth()
+    {
+        return this.checkpoints.length;
+    }
+
+    /**
+     * Returns true if changes must be journaled -- i.e. a place() is pending or
+     *      a push() checkpoint may be popped.
+     */
+    private boolean isJournaling()
+    {
+        return ! this.committed || this.depth > 0;
+    }
+
+    /**
+     * Replays the undo journal newest entry first until it is back to the
+     *      given size.
+     */
+    private void rewind(int mark)
+    {
+        for(int i = this.journalSize - 1; i >= mark; i--)
+        {
+            final int key = this.journalKeys[i];
+            final long value = this.journalValues[i];
+
+            if(key >= 0)
+            {
+                this.rows[key] = value;
+                this.rowWidths[key / this.words] = this.rowBitCount(key / this.words);
+            }
+            else if(key == JOURNAL_MAX_HEIGHT)
+            {
+                this.maxHeight = (int)value;
+            }
+            else if(key == JOURNAL_HASH)
+            {
+                this.hash = value;
+            }
+            else if(key == JOURNAL_HOLES_TRANSITIONS)
+            {
+                this.holes = (int)(value >> 32);
+                this.rowTransitions = (int)value;
+            }
+            else if(key == JOURNAL_SURFACE)
+            {
+                this.bumpiness = (int)(value >> 32);
+                this.wellDepth = (int)value;
+            }
+            else
+            {
+                this.colHeights[~key] = (int)(value >> 32);
+                this.colFills[~key] = (int)value;
+            }
+        }
+
+        this.journalSize = mark;
+    }
+
+    /**
+     * Packs two ints into one journal value.
+     */
+    private static long pack(int high, int low)
+    {
+        return ((long)high << 32) | (low & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Returns the number of filled blocks in a row, counted from its words.
+     */
+    private int rowBitCount(int row)
+    {
+        int count = 0;
+        for(int word = 0; word < this.words; word++)
+        {
+            count += Long.bitCount(this.rows[row * this.words + word]);
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns the number of filled/empty transitions along a row, counting the
+     *      side walls as filled.
+     *  Each word is compared with itself shifted up by one column, carrying in
+     *      the top bit of the word before (or the left wall).
+     */
+    private int rowTransitions(int row)
+    {
+        final int base = row * this.words;
+        int transitions = 0;
+        long carry = 1;
+        for(int word = 0; word < this.words; word++)
+        {
+            final long mask = this.rows[base + word];
+            final long valid = (word == this.words - 1) ? -1L >>> -this.width : -1L;
+            transitions += Long.bitCount((mask ^ ((mask << 1) | carry)) & valid);
+            carry = mask >>> 63;
+        }
+
+        // the last column against the right wall
+        if(! this.isFilled(this.width - 1, row))
+        {
+            transitions++;
+        }
+
+        return transitions;
+    }
+
+    /**
+     * Returns the bumpiness between the columns from left to right, clipped to
+     *      the board.
+     */
+    private int surfaceBumpiness(int left, int right)
+    {
+        left = Math.max(left, 0);
+        right = Math.min(right, this.width - 1);
+
+        int bumpiness = 0;
+        for(int col = left; col < right; col++)
+        {
+            bumpiness += Math.abs(this.colHeights[col] - this.colHeights[col + 1]);
+        }
+
+        return bumpiness;
+    }
+
+    /**
+     * Returns the sum of the well depths of the columns from left to right,
+     *      clipped to the board.
+     */
+    private int surfaceWellDepth(int left, int right)
+    {
+        left = Math.max(left, 0);
+        right = Math.min(right, this.width - 1);
+
+        int wellDepth = 0;
+        for(int col = left; col <= right; col++)
+        {
+            wellDepth += this.getWellDepth(col);
+        }
+
+        return wellDepth;
+    }
+
+    /**
+     * Returns the XOR of the Zobrist keys of the filled blocks in a row --
+     *      O(blocks in the row).
+     */
+    private long rowHash(int row)
+    {
+        long rowHash = 0;
+        for(int word = 0; word < this.words; word++)
+        {
+            long mask = this.rows[row * this.words + word];
+            final int base = row * this.keyStride + 64 * word;
+            while(mask != 0)
+            {
+                rowHash ^= this.zobristKeys[base + Long.numberOfTrailingZeros(mask)];
+                mask &= mask - 1;
+            }
+        }
+
+        return rowHash;
+    }
+
+    /**
+     * Records the old value of every word of a row in the undo journal.
+     */
+    private void journalRow(int row)
+    {
+        for(int word = row * this.words; word < (row + 1) * this.words; word++)
+        {
+            this.journal(word, this.rows[word]);
+        }
+    }
+
+    /**
+     * Records the old value of a row mask, column height, the max height or
+     *      the hash in the undo journal, growing the journal if needed.
+     */
+    private void journal(int key, long value)
+    {
+        if(this.journalSize == this.journalKeys.length)
+        {
+            this.journalKeys = Arrays.copyOf(this.journalKeys, 2 * this.journalSize);
+            this.journalValues = Arrays.copyOf(this.journalValues, 2 * this.journalSize);
+        }
+
+        this.journalKeys[this.journalSize] = key;
+        this.journalValues[this.journalSize] = value;
+        this.journalSize++;
+    }
+
+    /**
+     * Checks the board for internal consistency -- used for debugging.
+     *  How much is checked depends on the check level; see CHECK_OFF etc.
+     */
+    public void sanityCheck()
+    {
+        switch (this.checkLevel)
+        {
+            case CHECK_CHEAP:
+                this.cheapCheck();
+                break;
+
+            case CHECK_SAMPLED:
+                this.checkCountdown--;
+                if(this.checkCountdown <= 0)
+                {
+                    this.checkCountdown = this.checkInterval;
+                    this.fullCheck();
+                }
+                break;
+
+            case CHECK_FULL:
+                this.fullCheck();
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Checks the invariants that only take O(width): each column's top block
+     *      is filled with an empty block above it, and the max height is the
+     *      largest column height.
+     */
+    private void cheapCheck()
+    {
+        for(int col = 0; col < this.getWidth(); col++)
+        {
+            final int height = this.colHeights[col];
+
+            if(height < 0 || height > this.getHeight() ||
+                    (height > 0 && ! this.isFilled(col, height - 1)) ||
+                    (height < this.getHeight() && this.isFilled(col, height)))
+            {
+                throw new RuntimeException("column heights inconsistent");
+            }
+        }
+
+        this.checkMaxHeight();
+        this.checkFeatures();
+    }
+
+    /**
+     * Recounts every row and column of the grid -- O(width x height).
+     */
+    private void fullCheck()
+    {
+        if(this.rows.length != this.getHeight() * this.words)
+        {
+            throw new RuntimeException("grid height != board height");
+        }
+
+        // check row widths
+        final long unused = ~(-1L >>> -this.width);
+        for(int row = 0; row < this.getHeight(); row++)
+        {
+            if((this.rows[(row + 1) * this.words - 1] & unused) != 0)
+            {
+                throw new RuntimeException("grid width != board width");
+            }
+
+            if(this.rowWidths[row] != this.rowBitCount(row))
+            {
+                throw new RuntimeException("row widths inconsistent");
+            }
+        }
+
+        // check column heights
+        for(int col = 0; col < this.getWidth(); col++)
+        {
+            int height = 0;
+            int fill = 0;
+            for(int row = 0; row < this.getHeight(); row++)
+            {
+                if(this.isFilled(col, row))
+                {
+                    height = row + 1;
+                    fill++;
+                }
+            }
+
+            if(this.colHeights[col] != height)
+            {
+                throw new RuntimeException("column heights inconsistent");
+            }
+
+            if(this.colFills[col] != fill)
+            {
+                throw new RuntimeException("column fills inconsistent");
+            }
+        }
+
+        this.checkMaxHeight();
+        this.checkFeatures();
+
+        // check row transitions
+        int rowTransitions = 0;
+        for(int row = 0; row < this.getHeight(); row++)
+        {
+            rowTransitions += this.rowTransitions(row);
+        }
+
+        if(this.rowTransitions != rowTransitions)
+        {
+            throw new RuntimeException("row transitions inconsistent");
+        }
+
+        // check the hash
+        long hash = 0;
+        for(int row = 0; row < this.getHeight(); row++)
+        {
+            hash ^= this.rowHash(row);
+        }
+
+        if(this.hash != hash)
+        {
+            throw new RuntimeException("hash inconsistent");
+        }
+    }
+
+    /**
+     * Checks the holes, bumpiness and well depth totals against the column
+     *      heights and fills -- O(width).
+     */
+    private void checkFeatures()
+    {
+        int holes = 0;
+        for(int col = 0; col < this.getWidth(); col++)
+        {
+            holes += this.getColumnHoles(col);
+        }
+
+        if(this.holes != holes)
+        {
+            throw new RuntimeException("holes inconsistent");
+        }
+
+        if(this.bumpiness != this.surfaceBumpiness(0, this.width - 1))
+        {
+            throw new RuntimeException("bumpiness inconsistent");
+        }
+
+        if(this.wellDepth != this.surfaceWellDepth(0, this.width - 1))
+        {
+            throw new RuntimeException("well depth inconsistent");
+        }
+    }
+
+    /**
+     * Checks that the max height is the largest column height.
+     */
+    private void checkMaxHeight()
+    {
+        int maxHeight = 0; 
+        for(int col = 0; col < this.getWidth(); col++)
+        {
+            if(this.getColumnHeight(col) > maxHeight)
+            {
+                maxHeight = this.getColumnHeight(col);
+            }
+        }
+
+        if(this.getMaxHeight() != maxHeight)
+        {
+            throw new RuntimeException("max height inconsistent");
         }
     }
 }
@@ -0,0 +1,90 @@
+import java.util.Random;
+
+/**
+ * Plays headless games with the SimpleBrain on boards of several sizes and
+ *      prints how many pieces per second each size manages, to show how the
+ *      Board and the brain scale with width and height.
+ *  Run it with assertions off and no arguments, or pass the number of pieces
+ *      to play per size. The boards use Board.CHECK_OFF so that the timings
+ *      measure the placements rather than the consistency checks.
+ *
+ * @author agent
+ * @version 17 October 2026
+ */
+public class BoardBenchmark
+{
+    // board sizes to measure, as {width, height} in blocks
+    private static final int[][] SIZES = {
+        { 10, 20 }, { 10, 200 }, { 32, 20 }, { 64, 20 }, { 64, 200 },
+        { 65, 20 }, { 128, 20 }, { 128, 400 }
+    };
+
+    /**
+     * Measures every size in SIZES and prints one line for each.
+     *
+     *  @param args     optionally, the number of pieces to play per size
+     */
+    public static void main(String[] args)
+    {
+        final int pieceCount = (args.length > 0) ? Integer.parseInt(args[0]) : 20000;
+
+        // warm up the JIT on a small board first
+        BoardBenchmark.run(10, 20, pieceCount / 10);
+
+        System.out.println("  width  height      pieces    pieces/sec");
+        for (int[] size : SIZES)
+        {
+            final long start = System.nanoTime();
+            final int played = BoardBenchmark.run(size[0], size[1], pieceCount);
+            final double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%7d %7d %11d %13.0f%n", size[0], size[1], played,
+                    played / seconds);
+        }
+    }
+
+    /**
+     * Plays pieces with the SimpleBrain on a board of the given size, starting
+     *      a new board whenever a game is lost.
+     *
+     *  @param width        the board width in blocks
+     *  @param height       the board height in blocks, not counting the top space
+     *  @param pieceCount   the number of pieces to play
+     *  @return             the number of pieces placed, which is pieceCount
+     */
+    private static int run(int width, int height, int pieceCount)
+    {
+        final Piece[] pieces = Piece.getPieces();
+        final Random random = new Random(0);
+        final Brain brain = new SimpleBrain();
+        final int boardHeight = height + JTetris.TOP_SPACE;
+        Board board = new Board(width, boardHeight, Board.DEFAULT_MAX_DEPTH,
+                Board.CHECK_OFF);
+
+        int played = 0;
+        while (played < pieceCount)
+        {
+            final Piece piece = pieces[random.nextInt(pieces.length)];
+            final Move move = brain.bestMove(board, piece, boardHeight);
+            if (move == null)
+            {
+                board = new Board(width, boardHeight, Board.DEFAULT_MAX_DEPTH,
+                        Board.CHECK_OFF);
+                continue;
+            }
+
+            board.place(move.getPiece(), move.getX(), move.getY());
+            board.clearRows();
+            board.commit();
+            played++;
+
+            // the game is lost once the pile reaches into the top space
+            if (board.getMaxHeight() > height)
+            {
+                board = new Board(width, boardHeight, Board.DEFAULT_MAX_DEPTH,
+                        Board.CHECK_OFF);
+            }
+        }
+
+        return played;
+    }
+}
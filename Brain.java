@@ -14,8 +14,7 @@ public interface Brain
      *  The board should be in the committed state when this is called.
      *  "limitHeight" is the bottom section of the board that where pieces must
      *      come to rest -- typically 20.
-     *  If the passed in move is non-null, it is used to hold the result
-     *      (just to save the memory allocation).
+     *  A new Move is returned; see the overload that takes a Move to reuse one.
      *      
      *  @param board        the board in which to calculate the best move
      *  @param piece        the piece to place in the optimal location on the board
@@ -23,4 +22,76 @@ public interface Brain
      *  @return             the best move for the specified piece
     */
     public Move bestMove(Board board, Piece piece, int limitHeight);
+
+    /**
+     * Like bestMove(board, piece, limitHeight), but if the passed in move is
+     *      non-null, it is used to hold the result (just to save the memory
+     *      allocation) and returned. null is still returned if no play is
+     *      possible, and the move is then left alone.
+     *  Brains should override this to fill the move without allocating; this
+     *      version copies the result of the other overload into it.
+     *      
+     *  @param board        the board in which to calculate the best move
+     *  @param piece        the piece to place in the optimal location on the board
+     *  @param limitHeight  the piece must be placed below this height
+     *  @param move         the move to hold the result, or null for a new one
+     *  @return             the best move for the specified piece
+    */
+    public default Move bestMove(Board board, Piece piece, int limitHeight, Move move)
+    {
+        return Brain.copyInto(bestMove(board, piece, limitHeight), move);
+    }
+
+    /**
+     * Like bestMove(board, piece, limitHeight), but the brain may also look at
+     *      the pieces that will come after this one to plan them together.
+     *  Brains that do not look ahead just ignore the preview.
+     *      
+     *  @param board        the board in which to calculate the best move
+     *  @param piece        the piece to place in the optimal location on the board
+     *  @param preview      the pieces that come next, in order; may be empty
+     *  @param limitHeight  the piece must be placed below this height
+     *  @return             the best move for the specified piece
+    */
+    public default Move bestMove(Board board, Piece piece, Piece[] preview, int limitHeight)
+    {
+        return bestMove(board, piece, limitHeight);
+    }
+
+    /**
+     * Like bestMove(board, piece, preview, limitHeight), but if the passed in
+     *      move is non-null, it is used to hold the result and returned.
+     *  Brains should override this to fill the move without allocating; this
+     *      version copies the result of the other overload into it.
+     *      
+     *  @param board        the board in which to calculate the best move
+     *  @param piece        the piece to place in the optimal location on the board
+     *  @param preview      the pieces that come next, in order; may be empty
+     *  @param limitHeight  the piece must be placed below this height
+     *  @param move         the move to hold the result, or null for a new one
+     *  @return             the best move for the specified piece
+    */
+    public default Move bestMove(Board board, Piece piece, Piece[] preview, int limitHeight,
+            Move move)
+    {
+        return Brain.copyInto(bestMove(board, piece, preview, limitHeight), move);
+    }
+
+    /**
+     * Copies a result into the caller's move, if there is one and a result.
+     *  
+     *  @param result   the move found, or null
+     *  @param move     the move to hold the result, or null
+     *  @return         the move holding the result, or null if there is none
+    */
+    public static Move copyInto(Move result, Move move)
+    {
+        if (result == null || move == null)
+        {
+            return result;
+        }
+
+        move.set(result.getX(), result.getY(), result.getPiece(), result.getScore());
+        return move;
+    }
 }
@@ -27,6 +27,10 @@ public class BrainFactory
         ArrayList<Brain> brains= new ArrayList<Brain>();
         brains.add(new SimpleBrain());
         brains.add(new SmallBrain());
+        brains.add(new LookaheadBrain());
+        brains.add(new BeamBrain());
+        brains.add(new ExpectimaxBrain());
+        brains.add(new BigBrain());
         return brains;
         
         
@@ -0,0 +1,267 @@
+import java.util.Arrays;
+
+/**
+ * A brain that plays for the expected outcome over the random pieces to come.
+ *  JTetris picks every piece with the same chance, so after a play the value
+ *      of the board is the average, over the pieces that could come next, of
+ *      the best value that piece can reach -- and that best value in turn
+ *      averages over the piece after it, for as many levels as the depth.
+ *      At the last level a board is scored with SimpleBrain's rateBoard().
+ *      The move is the play of the current piece with the lowest value.
+ *
+ *  Pruning: every play is first rated with rateBoard(), and only the best few
+ *      (see the constructor) are searched further, best first; at the last
+ *      level no play is searched, the best rating is the value. When the time
+ *      budget for the piece runs out the search stops at every level, and
+ *      only the plays of the current piece whose search ended in time are
+ *      compared; if none did, the best rated play is taken, as SimpleBrain
+ *      would. So the brain keeps up with the game's tick on any board size.
+ *
+ *  Transposition table: the best value of a piece on a board at a given level
+ *      only depends on the board, so it is kept in a bounded table keyed by
+ *      the board's hash, the piece's type and the level. Plays in a different
+ *      order that leave the same board, or plays that clear rows down to the
+ *      same board, are then looked up instead of searched again. Each slot
+ *      holds one entry and a new entry replaces the old one, so the table
+ *      never grows; it is kept from one move to the next. A value cut short
+ *      by the time budget is not stored.
+ *
+ *  Plays are tried on the caller's board with push(), placeTrusted() and
+ *      pop(), one checkpoint per level. The preview is not used.
+ *
+ * @author agent
+ * @version 17 October 2026
+ */
+public class ExpectimaxBrain extends SimpleBrain
+{
+    // levels of random pieces averaged over
+    public static final int DEFAULT_DEPTH = 2;
+
+    // how many of the best plays of a piece are searched further
+    public static final int DEFAULT_EXPANDED = 4;
+
+    // time budget per piece; well within JTetris.DELAY
+    public static final long DEFAULT_BUDGET_MILLIS = 100;
+
+    // transposition table slots; must be a power of 2
+    public static final int DEFAULT_TABLE_SIZE = 1 << 16;
+
+    private Piece[] pieces;
+    private int depth;
+    private int expanded;
+    private long budgetNanos;
+
+    // transposition table: slot i holds the best value of the piece type and
+    //  level in tableTags[i] on the board with hash tableHashes[i]; tag 0 is
+    //  an empty slot
+    private long[] tableHashes;
+    private int[] tableTags;
+    private double[] tableValues;
+    private long tableHits;
+    private long tableMisses;
+
+    // the board width and limit height the table was filled for
+    private int tableWidth = -1;
+    private int tableLimit = -1;
+
+    // the plays being searched at each level; 0 is the current piece
+    private Plays[] levels;
+
+    /**
+     * Creates an expectimax brain over the game's pieces -- the set named by
+     *      the tetris.pieces system property, as JTetris plays it -- with the
+     *      default depth, number of expanded plays, time budget and table size.
+     */
+    public ExpectimaxBrain()
+    {
+        this(Piece.getPieceSet(System.getProperty("tetris.pieces")), DEFAULT_DEPTH,
+                DEFAULT_EXPANDED, DEFAULT_BUDGET_MILLIS, DEFAULT_TABLE_SIZE);
+    }
+
+    /**
+     * Creates an expectimax brain.
+     *
+     *  @param pieces           the pieces that can come next, each as likely
+     *  @param depth            the levels of random pieces to average over,
+     *                              from 1 to Board.DEFAULT_MAX_DEPTH; the
+     *                              search push()es once per level, so a board
+     *                              with less room is searched less deep
+     *  @param expanded         how many of the best plays of a piece are
+     *                              searched further; at least 1
+     *  @param budgetMillis     how long bestMove() may keep searching plays
+     *  @param tableSize        the number of transposition table slots; a
+     *                              power of 2
+     */
+    public ExpectimaxBrain(Piece[] pieces, int depth, int expanded, long budgetMillis,
+            int tableSize)
+    {
+        if (depth < 1 || depth > Board.DEFAULT_MAX_DEPTH || expanded < 1)
+        {
+            throw new IllegalArgumentException("bad search size: depth " + depth +
+                    ", expanded " + expanded);
+        }
+        if (tableSize < 1 || Integer.bitCount(tableSize) != 1)
+        {
+            throw new IllegalArgumentException("table size must be a power of 2: " + tableSize);
+        }
+
+        this.pieces = pieces;
+        this.depth = depth;
+        this.expanded = expanded;
+        this.budgetNanos = budgetMillis * 1000000L;
+        this.tableHashes = new long[tableSize];
+        this.tableTags = new int[tableSize];
+        this.tableValues = new double[tableSize];
+        this.levels = new Plays[depth + 1];
+        for (int i = 0; i < this.levels.length; i++)
+        {
+            this.levels[i] = new Plays();
+        }
+    }
+
+    /**
+     * Given a piece and a board, returns a move object that represents the play
+     *      with the best expected outcome over the pieces to come, or returns
+     *      null if no play is possible.
+     *  See the Brain interface for details.
+     *
+     *  @param board        the board in which to calculate the best move
+     *  @param piece        the piece to place in the optimal location on the board
+     *  @param limitHeight  the piece must be placed below this height
+     *  @param move         the move to hold the result, or null for a new one
+     *  @return             the best move for the specified piece
+     */
+    @Override
+    public Move bestMove(Board board, Piece piece, int limitHeight, Move move)
+    {
+        // hashes and values depend on the board size and the limit
+        if (board.getWidth() != this.tableWidth || limitHeight != this.tableLimit)
+        {
+            Arrays.fill(this.tableTags, 0);
+            this.tableWidth = board.getWidth();
+            this.tableLimit = limitHeight;
+        }
+
+        // every level pushes a checkpoint
+        final int searchDepth = Math.min(this.depth, board.getMaxDepth() - board.getDepth());
+        if (searchDepth < 1)
+        {
+            return super.bestMove(board, piece, limitHeight, move);
+        }
+
+        final long deadline = System.nanoTime() + this.budgetNanos;
+        final Plays plays = this.levels[0];
+        this.listPlays(board, piece, limitHeight, plays);
+        this.ratePlays(board, plays, true);
+
+        final int best = this.expandBestFirst(board, plays, this.expanded, limitHeight,
+                searchDepth, deadline);
+        if (best < 0)
+        {
+            return null;    // could not find a play at all!
+        }
+
+        if (move == null)
+        {
+            move = new Move();
+        }
+        move.set(plays.xs[best], plays.ys[best], plays.pieces[best], plays.bestScore);
+        return move;
+    }
+
+    /**
+     * Returns how many values were found in the transposition table.
+     *
+     *  @return the number of table hits so far
+     */
+    public long getTableHits()
+    {
+        return this.tableHits;
+    }
+
+    /**
+     * Returns how many values had to be searched.
+     *
+     *  @return the number of table misses so far
+     */
+    public long getTableMisses()
+    {
+        return this.tableMisses;
+    }
+
+    /**
+     * Returns the expected value of the board a play has just been placed on:
+     *      the average over the pieces of their best value on it at the given
+     *      level. The board must be committed and is left as it was.
+     */
+    @Override
+    protected double expandPlay(Board board, int limitHeight, int level, long deadline)
+    {
+        double sum = 0;
+        for (Piece piece : this.pieces)
+        {
+            sum += this.bestValue(board, piece, level, limitHeight, deadline);
+        }
+
+        return sum / this.pieces.length;
+    }
+
+    /**
+     * Returns the best value any play of the piece reaches on the board at the
+     *      given level -- the best rating at level 1, otherwise the best
+     *      expected value one level down among the best rated plays -- or
+     *      DEAD_END if the piece cannot be played or the deadline has passed,
+     *      since a value that ends past the deadline is dropped by
+     *      expandBestFirst(). Looks in the transposition table first. The board
+     *      must be committed and is left as it was.
+     */
+    private double bestValue(Board board, Piece piece, int level, int limitHeight,
+            long deadline)
+    {
+        final long hash = board.getHash();
+        final int tag = ((piece.getType() + 1) << 4) | level;
+        final int slot = (int)(hash ^ (hash >>> 32) ^ (tag * 0x9E3779B9)) &
+                (this.tableTags.length - 1);
+        if (this.tableTags[slot] == tag && this.tableHashes[slot] == hash)
+        {
+            this.tableHits++;
+            return this.tableValues[slot];
+        }
+        if (System.nanoTime() > deadline)
+        {
+            return DEAD_END;    // out of time; the value will be dropped anyway
+        }
+        this.tableMisses++;
+
+        final Plays plays = this.levels[this.depth - level + 1];
+        this.listPlays(board, piece, limitHeight, plays);
+        this.ratePlays(board, plays, true);
+        double value = DEAD_END;
+        if (level == 1)
+        {
+            for (int i = 0; i < plays.count; i++)
+            {
+                value = Math.min(value, plays.scores[i]);
+            }
+        }
+        else if (this.expandBestFirst(board, plays, this.expanded, limitHeight, level - 1,
+                deadline) >= 0)
+        {
+            value = plays.bestScore;
+        }
+
+        // a value that ends past the deadline may have been cut short
+        if (System.nanoTime() <= deadline)
+        {
+            this.tableHashes[slot] = hash;
+            this.tableTags[slot] = tag;
+            this.tableValues[slot] = value;
+        }
+        return value;
+    }
+
+    public String toString()
+    {
+        return "Expectimax Brain";
+    }
+}
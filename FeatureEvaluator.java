@@ -0,0 +1,319 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+
+/**
+ * Rates a board as a weighted sum of features of the board, lower being better.
+ *  The features are numbered by the constants below, which are also the
+ *      positions of their weights in a weight vector; getFeature() looks one
+ *      up by name. Each feature measures something bad, so weights are
+ *      usually positive, and a weight of 0 leaves a feature out.
+ *
+ *  The features the board keeps count of itself (holes, row transitions,
+ *      bumpiness, heights) are read from it. The rest are computed together
+ *      in one pass over the rows below the max height, so adding a feature to
+ *      the pass does not add another scan of the board per rated play.
+ *
+ *  Weights can be read from a file; see load(). An evaluator never changes
+ *      once built and can be used from several threads at once.
+ *
+ * @author agent
+ * @version 17 October 2026
+ */
+public class FeatureEvaluator
+{
+    // the height of the tallest column
+    public static final int MAX_HEIGHT = 0;
+    // the average column height
+    public static final int AVG_HEIGHT = 1;
+    // empty blocks below their column height
+    public static final int HOLES = 2;
+    // filled blocks above the lowest hole of their column
+    public static final int COVERED_BLOCKS = 3;
+    // the sum over the holes of how far each is below its column height, so
+    //  holes near the top of the pile count less than buried ones
+    public static final int HOLE_DEPTH = 4;
+    // rows with at least one hole; holes side by side count as one
+    public static final int HOLE_ROWS = 5;
+    // filled/empty changes along the rows; see Board.getRowTransitions()
+    public static final int ROW_TRANSITIONS = 6;
+    // filled/empty changes up the columns, the floor counting as filled
+    public static final int COLUMN_TRANSITIONS = 7;
+    // empty blocks above their column with both neighboring columns taller
+    //  (or a side of the board), each counted by how far up the 1-wide trough
+    //  it is, so a trough d deep counts 1 + 2 + ... + d and shallow troughs
+    //  cost little
+    public static final int TROUGHS = 8;
+    // see Board.getBumpiness()
+    public static final int BUMPINESS = 9;
+
+    public static final int FEATURE_COUNT = 10;
+
+    private static final String[] NAMES = {
+        "maxHeight", "avgHeight", "holes", "coveredBlocks", "holeDepth", "holeRows",
+        "rowTransitions", "columnTransitions", "troughs", "bumpiness"
+    };
+
+    // made up numbers, like SimpleBrain's, that play well on the standard board
+    private static final double[] DEFAULT_WEIGHTS = {
+        0.5, 4.5, 4, 0.5, 0.5, 8, 3.2, 9.3, 3.4, 0.5
+    };
+
+    private final double[] weights;
+
+    // each thread's scratch space for the pass over the board
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    /**
+     * Creates an evaluator with the default weights.
+     */
+    public FeatureEvaluator()
+    {
+        this(DEFAULT_WEIGHTS);
+    }
+
+    /**
+     * Creates an evaluator with the given weights.
+     *
+     *  @param weights  the weight of each feature, indexed by the feature
+     *                      constants; the array is copied
+     */
+    public FeatureEvaluator(double[] weights)
+    {
+        if (weights.length != FEATURE_COUNT)
+        {
+            throw new IllegalArgumentException("expected " + FEATURE_COUNT + " weights: " +
+                    weights.length);
+        }
+
+        this.weights = weights.clone();
+    }
+
+    /**
+     * Reads the weights from a file, one feature per line as its name and its
+     *      weight ("holes 4.5"). Blank lines and lines starting with '#' are
+     *      skipped, and features not in the file keep their default weight.
+     *
+     *  @param fileName     the name of the weights file
+     *  @return an evaluator with the weights in the file
+     */
+    public static FeatureEvaluator load(String fileName)
+    {
+        double[] weights = DEFAULT_WEIGHTS.clone();
+        try(BufferedReader in = new BufferedReader(new FileReader(fileName)))
+        {
+            String line;
+            while((line = in.readLine()) != null)
+            {
+                line = line.trim();
+                if(! line.isEmpty() && ! line.startsWith("#"))
+                {
+                    String[] fields = line.split("\\s+");
+                    if(fields.length != 2)
+                    {
+                        throw new RuntimeException("Bad line in weights file " + fileName +
+                                ": " + line);
+                    }
+                    weights[FeatureEvaluator.getFeature(fields[0])] =
+                            Double.parseDouble(fields[1]);
+                }
+            }
+        }
+        catch(IOException e)
+        {
+            throw new RuntimeException("Could not read weights " + fileName + ": " + e.getMessage());
+        }
+
+        return new FeatureEvaluator(weights);
+    }
+
+    /**
+     * Returns the feature with the given name.
+     *
+     *  @param name     the name of a feature, as getFeatureName() returns it
+     *  @return the feature's constant
+     */
+    public static int getFeature(String name)
+    {
+        for (int i = 0; i < FEATURE_COUNT; i++)
+        {
+            if (NAMES[i].equals(name))
+            {
+                return i;
+            }
+        }
+
+        throw new IllegalArgumentException("unknown feature: " + name);
+    }
+
+    /**
+     * Returns the name of a feature.
+     *
+     *  @param feature  one of the feature constants
+     *  @return the feature's name
+     */
+    public static String getFeatureName(int feature)
+    {
+        return NAMES[feature];
+    }
+
+    /**
+     * Returns the weight of a feature.
+     *
+     *  @param feature  one of the feature constants
+     *  @return the feature's weight
+     */
+    public double getWeight(int feature)
+    {
+        return this.weights[feature];
+    }
+
+    /**
+     * Returns the weighted sum of the board's features; lower is better.
+     *
+     *  @param board    the board to rate
+     *  @return the board's score
+     */
+    public double evaluate(Board board)
+    {
+        final double[] features = this.scratch.get().features;
+        this.computeFeatures(board, features);
+
+        double score = 0;
+        for (int i = 0; i < FEATURE_COUNT; i++)
+        {
+            score += this.weights[i] * features[i];
+        }
+
+        return score;
+    }
+
+    /**
+     * Computes every feature of the board.
+     *
+     *  @param board        the board to measure
+     *  @param features     receives the value of each feature, indexed by the
+     *                          feature constants; at least FEATURE_COUNT long
+     */
+    public void computeFeatures(Board board, double[] features)
+    {
+        final int width = board.getWidth();
+        final int maxHeight = board.getMaxHeight();
+        final Scratch s = this.scratch.get();
+        s.ensureWidth(width);
+        final int[] heights = s.heights;
+        final int[] troughRuns = s.troughRuns;
+        final boolean[] below = s.below;
+        final boolean[] holeBelow = s.holeBelow;
+
+        int sumHeight = 0;
+        for (int x = 0; x < width; x++)
+        {
+            heights[x] = board.getColumnHeight(x);
+            sumHeight += heights[x];
+            troughRuns[x] = 0;
+            below[x] = true;    // the floor
+            holeBelow[x] = false;
+        }
+
+        // one pass up the rows, carrying each column's state from the row below
+        int covered = 0;
+        int holeDepth = 0;
+        int holeRows = 0;
+        int columnTransitions = 0;
+        int troughs = 0;
+        for (int y = 0; y < maxHeight; y++)
+        {
+            boolean rowHasHole = false;
+            for (int x = 0; x < width; x++)
+            {
+                final boolean filled = board.getGrid(x, y);
+                if (filled != below[x])
+                {
+                    columnTransitions++;
+                }
+                below[x] = filled;
+
+                if (y < heights[x])
+                {
+                    if (! filled)
+                    {
+                        holeDepth += heights[x] - y;
+                        holeBelow[x] = true;
+                        rowHasHole = true;
+                    }
+                    else if (holeBelow[x])
+                    {
+                        covered++;
+                    }
+                }
+                else if ((x == 0 || y < heights[x - 1]) && (x == width - 1 || y < heights[x + 1]))
+                {
+                    troughRuns[x]++;
+                    troughs += troughRuns[x];
+                }
+            }
+
+            if (rowHasHole)
+            {
+                holeRows++;
+            }
+        }
+
+        // the top of each column that reaches the max height, or has nothing
+        //  above the floor, still changes to the empty space above it
+        for (int x = 0; x < width; x++)
+        {
+            if (below[x])
+            {
+                columnTransitions++;
+            }
+        }
+
+        features[MAX_HEIGHT] = maxHeight;
+        features[AVG_HEIGHT] = ((double)sumHeight) / width;
+        features[HOLES] = board.getHoles();
+        features[COVERED_BLOCKS] = covered;
+        features[HOLE_DEPTH] = holeDepth;
+        features[HOLE_ROWS] = holeRows;
+        features[ROW_TRANSITIONS] = board.getRowTransitions();
+        features[COLUMN_TRANSITIONS] = columnTransitions;
+        features[TROUGHS] = troughs;
+        features[BUMPINESS] = board.getBumpiness();
+    }
+
+    public String toString()
+    {
+        StringBuilder buff = new StringBuilder();
+        for (int i = 0; i < FEATURE_COUNT; i++)
+        {
+            buff.append(NAMES[i]).append(' ').append(this.weights[i]).append('\n');
+        }
+
+        return buff.toString();
+    }
+
+    /**
+     * One thread's per-column state for computeFeatures() and the features
+     *      for evaluate(), grown to the widest board seen.
+     */
+    private static class Scratch
+    {
+        private int[] heights = new int[0];
+        private int[] troughRuns = new int[0];
+        private boolean[] below = new boolean[0];
+        private boolean[] holeBelow = new boolean[0];
+        private final double[] features = new double[FEATURE_COUNT];
+
+        private void ensureWidth(int width)
+        {
+            if (this.heights.length < width)
+            {
+                this.heights = new int[width];
+                this.troughRuns = new int[width];
+                this.below = new boolean[width];
+                this.holeBelow = new boolean[width];
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+/**
+ *  Receives the features of a speculative placement from
+ *      Board.evaluatePlacement().
+ *  The column heights are reported first, one call per column from left to
+ *      right, followed by a single call to placement() with the totals.
+ *  
+ *  @see Board#evaluatePlacement(Piece, int, int, FeatureSink)
+ */
+public interface FeatureSink
+{
+    /**
+     * Reports the height a column would have after the placement and any row
+     *      clearing it causes.
+     *      
+     *  @param col      the column
+     *  @param height   the resulting height of the column
+     */
+    public void columnHeight(int col, int height);
+
+    /**
+     * Reports the totals of the placement, after all the column heights.
+     * 
+     *  @param rowsCleared  the number of rows the placement would fill and clear
+     *  @param maxHeight    the resulting max column height
+     *  @param holes        the resulting number of holes
+     *  @param holesDelta   the change in the number of holes from the board as
+     *                          it is now
+     */
+    public void placement(int rowsCleared, int maxHeight, int holes, int holesDelta);
+}
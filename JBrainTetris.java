@@ -25,8 +25,11 @@ public class JBrainTetris extends JTetris
     private JButton brainEnabler;
     private boolean brainEnabled=false;
     private Move bestMove;
+    private Move moveHolder=new Move(); // reused for every piece's best move
     JBrainTetris(int width, int height)
-    {super(width,height);
+    {this(width,height,WIDTH,HEIGHT);}
+    JBrainTetris(int width, int height, int boardWidth, int boardHeight)
+    {super(width,height,boardWidth,boardHeight);
     ArrayList<Brain> LOB=BrainFactory.createBrains();
     brainList= new JComboBox(LOB.toArray());
     brainEnabler=new JButton("Enable Brain");
@@ -48,14 +51,14 @@ public class JBrainTetris extends JTetris
     public Piece pickNextPiece()
     {
         Piece peez=super.pickNextPiece();
-        bestMove=currbrain.bestMove(board,peez,HEIGHT+TOP_SPACE);
+        bestMove=currbrain.bestMove(board,peez,getPreview(),board.getHeight(),moveHolder);
         return peez;
     }
 
     @Override 
     public void tick(int VERB){
         if(!brainEnabled){super.tick(VERB); return;}
-        if(currentPiece.getSkirt()!=bestMove.getPiece().getSkirt())
+        if(currentPiece.getId()!=bestMove.getPiece().getId())
         {
             super.tick(ROTATE);
         }
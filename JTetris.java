@@ -36,6 +36,10 @@ public class JTetris extends JComponent
     // if a piece is sticking up into this area when it has landed -- game over!
     public static final int TOP_SPACE = 4;
     
+    // size of this game's board in blocks, not counting the top space
+    protected int boardWidth;
+    protected int boardHeight;
+    
     
     // when this is true, plays a fixed sequence of 100 pieces
     protected boolean testMode = false;
@@ -49,6 +53,11 @@ public class JTetris extends JComponent
     protected Board board;
     protected Piece[] pieces;
     
+    // the pieces that come after the current one, drawn ahead of time
+    public static final int PREVIEW_SIZE = 1;
+    protected ArrayDeque<Piece> preview = new ArrayDeque<>();
+    private Piece[] previewPieces = new Piece[PREVIEW_SIZE];   // see getPreview()
+    
     
     // the current piece in play or null
     protected Piece currentPiece;
@@ -81,14 +90,32 @@ public class JTetris extends JComponent
     
 
     JTetris(int width, int height)
+    {
+        this(width, height, WIDTH, HEIGHT);
+    }
+
+    /**
+     * Creates a game on a board of the given size in blocks; the board may be
+     *      wider than 64 columns.
+     *
+     *  @param width        the preferred width of the component in pixels
+     *  @param height       the preferred height of the component in pixels
+     *  @param boardWidth   the width of the board in blocks
+     *  @param boardHeight  the height of the board in blocks, not counting
+     *                          the top space
+     */
+    JTetris(int width, int height, int boardWidth, int boardHeight)
     {
         super();
 
         setPreferredSize(new Dimension(width, height));
         this.gameOn = false;
         
-        this.pieces = Piece.getPieces();
-        this.board = new Board(WIDTH, HEIGHT + TOP_SPACE);
+        this.boardWidth = boardWidth;
+        this.boardHeight = boardHeight;
+        // -Dtetris.pieces=5 plays pentominoes; see Piece.getPieceSet()
+        this.pieces = Piece.getPieceSet(System.getProperty("tetris.pieces"));
+        this.board = new Board(this.boardWidth, this.boardHeight + TOP_SPACE);
 
 
         /*
@@ -134,13 +161,14 @@ public class JTetris extends JComponent
     public void startGame()
     {
         // cheap way to reset the board state
-        this.board = new Board(WIDTH, HEIGHT + TOP_SPACE);
+        this.board = new Board(this.boardWidth, this.boardHeight + TOP_SPACE);
         
         // draw the new board state once
         this.repaint();
         
         this.count = 0;
         this.gameOn = true;
+        this.preview.clear();
         
         if (this.testMode)
         {
@@ -220,9 +248,43 @@ public class JTetris extends JComponent
 
 
     /**
-     * Selects the next piece to use using the random generator set in startGame().
+     * Selects the next piece to use from the front of the preview queue, and
+     *      tops the queue up so that PREVIEW_SIZE pieces are always known
+     *      ahead of time. The pieces come out in the same order they were
+     *      drawn, so the sequence is the same as without a preview.
     */
     public Piece pickNextPiece()
+    {
+        while (this.preview.size() < PREVIEW_SIZE + 1)
+        {
+            this.preview.addLast(this.drawPiece());
+        }
+        
+        return this.preview.removeFirst();
+    }
+    
+    /**
+     * Returns the pieces that will come after the current one, in order.
+     *  While a game is running the same array is filled in and returned every
+     *      time, so nothing is allocated per piece; callers must not keep it.
+     * 
+     * @return the preview pieces
+    */
+    public Piece[] getPreview()
+    {
+        if (this.preview.size() != this.previewPieces.length)
+        {
+            // only before the queue is first filled
+            return this.preview.toArray(new Piece[this.preview.size()]);
+        }
+
+        return this.preview.toArray(this.previewPieces);   // fills it in place
+    }
+    
+    /**
+     * Draws a random piece using the random generator set in startGame().
+    */
+    protected Piece drawPiece()
     {
         int pieceNum = (int)(this.pieces.length * this.random.nextDouble());
         return this.pieces[pieceNum];
@@ -0,0 +1,133 @@
+/**
+ * A brain that plans the current piece and the preview piece together.
+ *  Every play of the current piece is placed and rated with SimpleBrain's
+ *      rateBoard(), as in SimpleBrain. Only the best few of those (see the
+ *      constructor) are expanded: the first piece is left on the board with
+ *      push(), every play of the next piece is tried on top of it, and the
+ *      pair is scored by the best board the next piece can leave. The move
+ *      is the first piece's play from the best pair.
+ *
+ *  The expansions are done best first (see SimpleBrain.expandBestFirst()) and
+ *      stop when the time budget for the piece runs out, so a slow machine
+ *      still moves on time -- it just compares fewer pairs. Without a preview
+ *      piece this is exactly SimpleBrain.
+ *
+ *  Only the first preview piece is used; the rest of the preview is ignored.
+ *
+ * @author agent
+ * @version 17 October 2026
+ */
+public class LookaheadBrain extends SimpleBrain
+{
+    // how many of the best first-level plays are expanded
+    public static final int DEFAULT_EXPANDED = 8;
+
+    // time budget per piece
+    public static final long DEFAULT_BUDGET_MILLIS = 50;
+
+    private int expanded;
+    private long budgetNanos;
+
+    // the plays of the current piece, and of the next piece after one of them
+    private Plays first = new Plays();
+    private Plays second = new Plays();
+
+    // the preview piece of the current bestMove() call
+    private Piece nextPiece;
+
+    /**
+     * Creates a lookahead brain with the default number of expanded plays and
+     *      time budget.
+     */
+    public LookaheadBrain()
+    {
+        this(DEFAULT_EXPANDED, DEFAULT_BUDGET_MILLIS);
+    }
+
+    /**
+     * Creates a lookahead brain.
+     *
+     *  @param expanded         how many of the best plays of the current piece
+     *                              to try the next piece after; at least 1
+     *  @param budgetMillis     how long bestMove() may keep expanding plays
+     */
+    public LookaheadBrain(int expanded, long budgetMillis)
+    {
+        if (expanded < 1)
+        {
+            throw new IllegalArgumentException("must expand at least 1 play: " + expanded);
+        }
+
+        this.expanded = expanded;
+        this.budgetNanos = budgetMillis * 1000000L;
+    }
+
+    /**
+     * Given a piece, the pieces after it and a board, returns a move object
+     *      that represents the best play for that piece, or returns null if no
+     *      play is possible.
+     *  See the Brain interface for details.
+     *
+     *  @param board        the board in which to calculate the best move
+     *  @param piece        the piece to place in the optimal location on the board
+     *  @param preview      the pieces that come next; only the first is used
+     *  @param limitHeight  the piece must be placed below this height
+     *  @param move         the move to hold the result, or null for a new one
+     *  @return             the best move for the specified piece
+     */
+    @Override
+    public Move bestMove(Board board, Piece piece, Piece[] preview, int limitHeight,
+            Move move)
+    {
+        if (preview == null || preview.length == 0)
+        {
+            return this.bestMove(board, piece, limitHeight, move);
+        }
+
+        final long deadline = System.nanoTime() + this.budgetNanos;
+        final Plays plays = this.first;
+        this.listPlays(board, piece, limitHeight, plays);
+        this.ratePlays(board, plays, true);
+
+        this.nextPiece = preview[0];
+        final int best = this.expandBestFirst(board, plays, this.expanded, limitHeight, 1,
+                deadline);
+        if (best < 0)
+        {
+            return null;    // could not find a play at all!
+        }
+
+        if (move == null)
+        {
+            move = new Move();
+        }
+        move.set(plays.xs[best], plays.ys[best], plays.pieces[best], plays.bestScore);
+        return move;
+    }
+
+    /**
+     * Returns the score of the best board that any play of the preview piece
+     *      leaves, or DEAD_END if it cannot be played. The board must be
+     *      committed and is left as it was.
+     */
+    @Override
+    protected double expandPlay(Board board, int limitHeight, int level, long deadline)
+    {
+        final Plays plays = this.second;
+        this.listPlays(board, this.nextPiece, limitHeight, plays);
+        this.ratePlays(board, plays, true);
+
+        double bestScore = DEAD_END;
+        for (int i = 0; i < plays.count; i++)
+        {
+            bestScore = Math.min(bestScore, plays.scores[i]);
+        }
+
+        return bestScore;
+    }
+
+    public String toString()
+    {
+        return "Lookahead Brain";
+    }
+}
@@ -12,6 +12,15 @@ public class Move
     private Piece piece;
     private double score;
     
+    /**
+     * Constructs an empty Move object, for a caller to pass to
+     *      Brain.bestMove() to hold the result
+     */
+    public Move()
+    {
+        this(0, 0, null, 0);
+    }
+    
     /**
      * Constructs a new Move object
      * 
@@ -28,6 +37,23 @@ public class Move
         this.score = initialScore;
     }
     
+    /**
+     * Sets every attribute of this move, so that one Move object can be reused
+     *      for many results
+     * 
+     * @param newX the desired x coordinate of the bottom-left corner of the piece
+     * @param newY the desired y coordinate of the bottom-left corner of the piece
+     * @param newPiece the desired orientation (rotation) of the piece
+     * @param newScore the score of this move (lower scores are better)
+     */
+    public void set(int newX, int newY, Piece newPiece, double newScore)
+    {
+        this.x = newX;
+        this.y = newY;
+        this.piece = newPiece;
+        this.score = newScore;
+    }
+    
     /**
      * Returns the desired x coordinate of the bottom-left corner of the piece for this move
      * 
@@ -1,8 +1,12 @@
 import java.awt.Point;
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.ArrayList;
-import java.util.Set;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.NoSuchElementException;
 import java.util.StringTokenizer;
 
 /**
@@ -26,9 +30,42 @@ public final class Piece {
     private int[] skirt;
     private int width;
     private int height;
-    private Piece next; // "next" rotation
+    private Piece next; // "next" rotation, linked up by pieceRow
+    private int id;     // dense index of this rotation among all rotations
+    private int type;   // dense index of this piece among all pieces
+    private int rotationIndex;  // 0 for the first rotation, 1 for the next...
+    private Piece[] allRotations;   // every distinct rotation of this piece, first one first
 
-    static private Piece[] pieces;  // singleton array of first rotations
+    // primitive copies of the body for the Board's fast paths
+    private long[] rowMasks;    // bit x of rowMasks[y] is set if (x, y) is in the body
+    private int[] xs;           // the body as parallel x and y arrays
+    private int[] ys;
+    private int[] top;          // for each x, the highest y in the body + 1
+
+    // the body in a canonical form for equals() and hashCode()
+    private int[] cells;        // (y << 16) | x for each block, sorted
+    private long signature;     // the cells packed into a long, or a hash of them
+    private boolean exact;      // true if the signature alone identifies the body
+
+    // piece sets already built by getPieceSet(), by name
+    static private HashMap<String, Piece[]> pieceSets = new HashMap<>();
+
+    /*
+     * Global rotation tables, indexed by rotation id. Every rotation of every
+     *  piece gets the next dense id as pieceRow() links it up, so search code
+     *  can refer to a rotation by a plain int and look up its next rotation,
+     *  size and skirt without touching the Piece.
+     * The tables are only written by registerRotations(), which is
+     *  synchronized. They are volatile so that a thread that reads a table
+     *  after it has been grown also sees the entries copied into it.
+     */
+    static private volatile Piece[] rotations = new Piece[0];
+    static private volatile int[] nextIds = new int[0];
+    static private volatile int[] widths = new int[0];
+    static private volatile int[] heights = new int[0];
+    static private volatile int[][] skirts = new int[0][];
+    static private volatile int rotationCount;
+    static private int typeCount;
 
     /**
      * Defines a new piece given the Points that make up its body.
@@ -42,8 +79,10 @@ public final class Piece {
      */
     private Piece(Point[] points)
     {
-        // initialize next to null; it will be initialized in the pieceRow method
+        // initialize next to null and the id to -1; they will be initialized
+        //  in the pieceRow method
         this.next = null;
+        this.id = -1;
         
         this.body=new Point[points.length];
         for(int i=0; i<body.length; i++){
@@ -77,6 +116,8 @@ public final class Piece {
             if(skirt[point.x]>point.y){skirt[point.x]=point.y;}
         }
         
+        this.buildTables();
+        
         
         // TODO: initialize the width instance variable with the width of the piece
         
@@ -98,6 +139,71 @@ public final class Piece {
 
     }   
 
+    /**
+     * Builds the primitive tables -- row masks, x and y arrays and the top
+     *      profile -- from the body, so that the Board can place and test the
+     *      piece without touching Point objects.
+     */
+    private void buildTables()
+    {
+        if(this.width > 64)
+        {
+            throw new IllegalArgumentException("piece is wider than 64 blocks: " + this.width);
+        }
+
+        this.rowMasks = new long[this.height];
+        this.xs = new int[this.body.length];
+        this.ys = new int[this.body.length];
+        this.top = new int[this.width];
+        for(int i = 0; i < this.body.length; i++)
+        {
+            final Point point = this.body[i];
+            this.xs[i] = point.x;
+            this.ys[i] = point.y;
+            this.rowMasks[point.y] |= 1L << point.x;
+            this.top[point.x] = Math.max(this.top[point.x], point.y + 1);
+        }
+
+        this.buildSignature();
+    }
+
+    /**
+     * Normalizes the body into its sorted cells and packs them into the
+     *      signature.
+     *  Bodies of up to 7 blocks within a 16 x 16 box -- every standard piece
+     *      and every polyomino up to heptominoes -- pack exactly: the block
+     *      count in the top byte, then a byte of (y << 4) | x per block. Larger
+     *      bodies get a hash of their cells instead, and equals() falls back
+     *      to comparing the cells when the hashes match.
+     */
+    private void buildSignature()
+    {
+        this.cells = new int[this.body.length];
+        for(int i = 0; i < this.body.length; i++)
+        {
+            this.cells[i] = (this.ys[i] << 16) | this.xs[i];
+        }
+        Arrays.sort(this.cells);
+
+        this.exact = this.cells.length <= 7 && this.width <= 16 && this.height <= 16;
+        if(this.exact)
+        {
+            this.signature = this.cells.length;
+            for(int cell : this.cells)
+            {
+                this.signature = (this.signature << 8) | ((cell >>> 16) << 4) | (cell & 0xF);
+            }
+        }
+        else
+        {
+            this.signature = this.cells.length;
+            for(int cell : this.cells)
+            {
+                this.signature = this.signature * 0x9E3779B97F4A7C15L + cell;
+            }
+        }
+    }
+
     /**
      * Returns the width of the piece measured in blocks.
      * 
@@ -143,6 +249,56 @@ public final class Piece {
         return this.skirt;
     }
 
+    /**
+     * Returns a reference to this piece's row masks.
+     * Bit x of element y is set if the body contains the block (x, y), so a
+     *      row of the piece can be shifted and or'ed into a row of a board.
+     * The caller should not modify this array.
+     * 
+     * @return a reference to this piece's row masks, one per row of the piece
+     */
+    public long[] getRowMasks()
+    {
+        return this.rowMasks;
+    }
+
+    /**
+     * Returns a reference to the x values of this piece's body, in the same
+     *      order as getBody() and getYs().
+     * The caller should not modify this array.
+     * 
+     * @return a reference to the x values of this piece's body
+     */
+    public int[] getXs()
+    {
+        return this.xs;
+    }
+
+    /**
+     * Returns a reference to the y values of this piece's body, in the same
+     *      order as getBody() and getXs().
+     * The caller should not modify this array.
+     * 
+     * @return a reference to the y values of this piece's body
+     */
+    public int[] getYs()
+    {
+        return this.ys;
+    }
+
+    /**
+     * Returns a reference to this piece's top profile.
+     * For each x value across the piece, the top gives the highest y value in
+     *      the body + 1; it is the upper counterpart of the skirt.
+     * The caller should not modify this array.
+     * 
+     * @return a reference to this piece's top profile
+     */
+    public int[] getTop()
+    {
+        return this.top;
+    }
+
     /**
      * Returns a reference to a Piece that is 90 degrees counter-clockwise
      *      rotated from this Piece.
@@ -157,7 +313,138 @@ public final class Piece {
      */ 
     public Piece nextRotation()
     {
-        return this.next;
+        return Piece.rotations[Piece.nextIds[this.id]];
+    }
+
+    /**
+     * Returns this rotation's id: a dense index, from 0 to
+     *      getRotationIdCount() - 1, across all the rotations of all the pieces.
+     *  Two rotations have the same id exactly when they are the same object.
+     *
+     *  @return this rotation's id
+     */
+    public int getId()
+    {
+        return this.id;
+    }
+
+    /**
+     * Returns the type of this piece: a dense index, in the order the pieces
+     *      were built, across all the pieces of all the piece sets.
+     *
+     *  @return the type of this piece
+     */
+    public int getType()
+    {
+        return this.type;
+    }
+
+    /**
+     * Returns how many nextRotation() steps this rotation is from the first
+     *      rotation of its piece.
+     *
+     *  @return the index of this rotation within its piece
+     */
+    public int getRotationIndex()
+    {
+        return this.rotationIndex;
+    }
+
+    /**
+     * Returns the number of distinct rotations of this piece: 1 for the
+     *      square, 2 for the I, S and Z pieces and 4 for the others.
+     *  pieceRow() stops rotating when it gets back to a shape it has seen, so
+     *      no two rotations have the same shape, and dropping two different
+     *      rotations, or one rotation at two different columns, always gives
+     *      two different placements. Move generation that loops over the
+     *      rotations and the columns therefore never tries a placement twice.
+     *
+     *  @return the number of distinct rotations of this piece
+     */
+    public int getRotationCount()
+    {
+        return this.allRotations.length;
+    }
+
+    /**
+     * Returns a reference to an array of the distinct rotations of this
+     *      piece, starting with its first rotation; the same array is returned
+     *      for every rotation of the piece.
+     * The caller should not modify this array.
+     *
+     *  @return a reference to the distinct rotations of this piece
+     */
+    public Piece[] getRotations()
+    {
+        return this.allRotations;
+    }
+
+    /**
+     * Returns the number of rotation ids handed out so far; ids are
+     *      0 to getRotationIdCount() - 1.
+     *
+     *  @return the number of rotation ids
+     */
+    public static int getRotationIdCount()
+    {
+        return Piece.rotationCount;
+    }
+
+    /**
+     * Returns the rotation with the given id.
+     *
+     *  @param id   a rotation id
+     *  @return the rotation with the given id
+     */
+    public static Piece getRotation(int id)
+    {
+        return Piece.rotations[id];
+    }
+
+    /**
+     * Returns the id of the rotation after the one with the given id; the
+     *      int counterpart of nextRotation().
+     *
+     *  @param id   a rotation id
+     *  @return the id of the next rotation
+     */
+    public static int getNextRotationId(int id)
+    {
+        return Piece.nextIds[id];
+    }
+
+    /**
+     * Returns the width of the rotation with the given id.
+     *
+     *  @param id   a rotation id
+     *  @return the width of the rotation measured in blocks
+     */
+    public static int getRotationWidth(int id)
+    {
+        return Piece.widths[id];
+    }
+
+    /**
+     * Returns the height of the rotation with the given id.
+     *
+     *  @param id   a rotation id
+     *  @return the height of the rotation measured in blocks
+     */
+    public static int getRotationHeight(int id)
+    {
+        return Piece.heights[id];
+    }
+
+    /**
+     * Returns a reference to the skirt of the rotation with the given id.
+     * The caller should not modify this array.
+     *
+     *  @param id   a rotation id
+     *  @return a reference to the skirt of the rotation
+     */
+    public static int[] getRotationSkirt(int id)
+    {
+        return Piece.skirts[id];
     }
 
     /**
@@ -166,6 +453,9 @@ public final class Piece {
      *  Interestingly, this is not the same as having exactly the same body
      *      arrays, since the points may not be in the same order in the bodies.
      *  Used internally to detect if two rotations are effectively the same.
+     *  Each body is normalized into a packed signature when the piece is
+     *      built, so this is a single comparison of longs for all but very
+     *      large pieces, and allocates nothing.
      *  
      *  @param other    the object with which to test equality 
      *  @return true if two pieces are the same
@@ -194,10 +484,24 @@ public final class Piece {
         Piece otherPiece = (Piece)other;
 
         // field comparison
-        Set<Point> thisSet = new HashSet<Point>(Arrays.asList(this.body));
-        Set<Point> otherSet = new HashSet<Point>(Arrays.asList(otherPiece.body));
+        if(this.signature != otherPiece.signature)
+        {
+            return false;
+        }
 
-        return thisSet.equals(otherSet);
+        return (this.exact && otherPiece.exact) || Arrays.equals(this.cells, otherPiece.cells);
+    }
+
+    /**
+     * Returns a hash code consistent with equals(): pieces with the same body
+     *      have the same hash code.
+     * 
+     * @return a hash code for this piece
+     */
+    @Override
+    public int hashCode()
+    {
+        return Long.hashCode(this.signature);
     }
 
     /**
@@ -226,12 +530,18 @@ public final class Piece {
      *      tetris pieces
      */
     public static Piece[] getPieces() {
-        if(Piece.pieces != null)
-        {
-            return Piece.pieces;
-        }
+        return StandardPieces.PIECES;
+    }
 
-        Piece.pieces = new Piece[]
+    /**
+     * Holds the standard pieces. The JVM initializes a class once, on its
+     *      first use and under a lock, so the pieces are built exactly once
+     *      even when several threads call getPieces() at the same time, and
+     *      after that getPieces() is a plain field read.
+     */
+    private static class StandardPieces
+    {
+        static final Piece[] PIECES =
         {
             Piece.pieceRow(new Piece(Piece.parsePoints("0 0 0 1 0 2 0 3"))),    // 0
             Piece.pieceRow(new Piece(Piece.parsePoints("0 0 0 1 0 2 1 0"))),    // 1
@@ -241,8 +551,6 @@ public final class Piece {
             Piece.pieceRow(new Piece(Piece.parsePoints("0 0 0 1 1 0 1 1"))),    // 5
             Piece.pieceRow(new Piece(Piece.parsePoints("0 0 1 0 1 1 2 0"))),    // 6
         };
-
-        return Piece.pieces;
     }
 
     /**
@@ -257,8 +565,6 @@ public final class Piece {
     {
         Piece piece = firstPiece;
         
-        System.out.println("\nfirst piece: " + piece);
-
         // maximum of 4 rotations until we are back at the first piece (we may break earlier)
         for( int j = 0; j < 4; j++)
         {
@@ -294,8 +600,6 @@ public final class Piece {
             
             // create the rotated piece, update next, prepare for nextIteration
             Piece rotatedPiece = new Piece(rotatedPoints);
-            
-            System.out.println(rotatedPiece);
 
             // check if we are back to the original piece
             if(rotatedPiece.equals(firstPiece))
@@ -312,12 +616,309 @@ public final class Piece {
             }
         }
 
+        Piece.registerRotations(firstPiece);
+
         return firstPiece;
     }
 
+    /**
+     * Gives each rotation of a newly linked piece the next type and rotation
+     *      ids, and adds them to the global rotation tables.
+     *
+     *  @param firstPiece   the first rotation of the piece
+     */
+    private static synchronized void registerRotations(Piece firstPiece)
+    {
+        int count = 0;
+        Piece piece = firstPiece;
+        do
+        {
+            count++;
+            piece = piece.next;
+        }
+        while(piece != firstPiece);
+
+        final int first = Piece.rotationCount;
+        final int length = first + count;
+        if(length > Piece.rotations.length)
+        {
+            // grow by doubling so that building a large set stays linear
+            final int capacity = Math.max(length, 2 * Piece.rotations.length);
+            Piece.rotations = Arrays.copyOf(Piece.rotations, capacity);
+            Piece.nextIds = Arrays.copyOf(Piece.nextIds, capacity);
+            Piece.widths = Arrays.copyOf(Piece.widths, capacity);
+            Piece.heights = Arrays.copyOf(Piece.heights, capacity);
+            Piece.skirts = Arrays.copyOf(Piece.skirts, capacity);
+        }
+
+        final int type = Piece.typeCount;
+        final Piece[] allRotations = new Piece[count];
+        for(int i = 0; i < count; i++)
+        {
+            final int id = first + i;
+            piece.id = id;
+            piece.type = type;
+            piece.rotationIndex = i;
+            piece.allRotations = allRotations;
+            allRotations[i] = piece;
+            Piece.rotations[id] = piece;
+            Piece.nextIds[id] = first + (i + 1) % count;
+            Piece.widths[id] = piece.width;
+            Piece.heights[id] = piece.height;
+            Piece.skirts[id] = piece.skirt;
+            piece = piece.next;
+        }
+
+        Piece.rotationCount = length;
+        Piece.typeCount++;
+    }
+
+    /**
+     * Returns the first rotations of a named set of pieces, building the set
+     *      the first time it is asked for and returning the same array after
+     *      that. Building a set adds its rotations to the global rotation
+     *      tables, so sets are only built here, once per name.
+     *  The name is one of:
+     *      null or "" -- the 7 standard tetris pieces of getPieces()
+     *      a number n -- every n-omino, see getPolyominoes()
+     *      anything else -- the name of a piece-set file, see loadPieces()
+     *  JTetris uses the set named by the tetris.pieces system property.
+     *
+     *  @param name     the name of the piece set
+     *  @return an array containing the first rotation of each piece in the set
+     */
+    public static Piece[] getPieceSet(String name)
+    {
+        if(name == null || name.isEmpty())
+        {
+            return Piece.getPieces();
+        }
+
+        synchronized(Piece.pieceSets)
+        {
+            Piece[] set = Piece.pieceSets.get(name);
+            if(set == null)
+            {
+                if(name.chars().allMatch(Character::isDigit))
+                {
+                    set = Piece.getPolyominoes(Integer.parseInt(name));
+                }
+                else
+                {
+                    set = Piece.loadPieces(name);
+                }
+                Piece.pieceSets.put(name, set);
+            }
+
+            return set;
+        }
+    }
+
+    /**
+     * Reads a piece-set file and builds all the rotations of each piece in it.
+     *  Each non-blank line that does not start with '#' holds one piece as x,y
+     *      pairs in the same form as the strings in getPieces()
+     *      ("0 0  0 1  0 2  1 0"). The blocks are moved so that the lowest and
+     *      leftmost ones are at 0; a line that does not parse, or that names a
+     *      block twice, is an error naming the file and line.
+     *
+     *  @param fileName     the name of the piece-set file
+     *  @return an array containing the first rotation of each piece in the file
+     */
+    private static Piece[] loadPieces(String fileName)
+    {
+        ArrayList<Piece> set = new ArrayList<>();
+        try(BufferedReader in = new BufferedReader(new FileReader(fileName)))
+        {
+            String line;
+            int lineNumber = 0;
+            while((line = in.readLine()) != null)
+            {
+                lineNumber++;
+                line = line.trim();
+                if(! line.isEmpty() && ! line.startsWith("#"))
+                {
+                    Point[] points;
+                    try
+                    {
+                        points = Piece.normalize(Piece.parsePoints(line));
+                    }
+                    catch(RuntimeException e)
+                    {
+                        throw new RuntimeException("Bad piece in " + fileName + " line " +
+                                lineNumber + ": " + e.getMessage());
+                    }
+                    set.add(Piece.pieceRow(new Piece(points)));
+                }
+            }
+        }
+        catch(IOException e)
+        {
+            throw new RuntimeException("Could not read piece set " + fileName + ": " + e.getMessage());
+        }
+
+        if(set.isEmpty())
+        {
+            throw new RuntimeException("Piece set " + fileName + " has no pieces");
+        }
+
+        return set.toArray(new Piece[set.size()]);
+    }
+
+    /**
+     * Generates every n-omino -- every shape of n blocks joined edge to edge
+     *      -- counting shapes that only differ by a rotation once, and builds
+     *      all their rotations. For n = 4 these are the 7 standard pieces
+     *      (in a different order); there are 18 for n = 5 and 60 for n = 6.
+     *  Shapes of n blocks are grown from the shapes of n - 1 blocks by adding
+     *      one block next to any block, and each shape is kept in a canonical
+     *      form -- the smallest sorted cell list among its rotations -- to
+     *      throw away the duplicates.
+     *
+     *  @param n    the number of blocks in each piece; at least 1
+     *  @return an array containing the first rotation of each n-omino
+     */
+    private static Piece[] getPolyominoes(int n)
+    {
+        if(n < 1)
+        {
+            throw new IllegalArgumentException("pieces need at least 1 block: " + n);
+        }
+
+        ArrayList<int[]> shapes = new ArrayList<>();
+        shapes.add(new int[] { 0 });
+        for(int size = 2; size <= n; size++)
+        {
+            HashSet<String> seen = new HashSet<>();
+            ArrayList<int[]> grown = new ArrayList<>();
+            for(int[] shape : shapes)
+            {
+                for(int cell : shape)
+                {
+                    final int x = cell & 0xFFFF;
+                    final int y = cell >>> 16;
+                    final int[][] neighbors = { { x + 1, y }, { x - 1, y }, { x, y + 1 }, { x, y - 1 } };
+                    for(int[] neighbor : neighbors)
+                    {
+                        int[] candidate = Piece.addCell(shape, neighbor[0], neighbor[1]);
+                        if(candidate != null)
+                        {
+                            candidate = Piece.canonicalCells(candidate);
+                            if(seen.add(Arrays.toString(candidate)))
+                            {
+                                grown.add(candidate);
+                            }
+                        }
+                    }
+                }
+            }
+            shapes = grown;
+        }
+
+        Piece[] set = new Piece[shapes.size()];
+        for(int i = 0; i < set.length; i++)
+        {
+            final int[] shape = shapes.get(i);
+            Point[] points = new Point[shape.length];
+            for(int j = 0; j < shape.length; j++)
+            {
+                points[j] = new Point(shape[j] & 0xFFFF, shape[j] >>> 16);
+            }
+            set[i] = Piece.pieceRow(new Piece(points));
+        }
+
+        return set;
+    }
+
+    /**
+     * Returns the cells of a shape with a block added at (x, y), moved so
+     *      that the lowest and leftmost blocks are at 0 again, or null if
+     *      the shape already has that block. Cells are (y << 16) | x.
+     */
+    private static int[] addCell(int[] shape, int x, int y)
+    {
+        final int dx = (x < 0) ? 1 : 0;
+        final int dy = (y < 0) ? 1 : 0;
+        int[] cells = new int[shape.length + 1];
+        for(int i = 0; i < shape.length; i++)
+        {
+            if(shape[i] == ((y << 16) | x))
+            {
+                return null;
+            }
+            cells[i] = shape[i] + (dy << 16) + dx;
+        }
+        cells[shape.length] = ((y + dy) << 16) | (x + dx);
+
+        return cells;
+    }
+
+    /**
+     * Returns the canonical form of a shape: the smallest sorted cell list
+     *      among its 4 rotations, each moved so that its lowest and leftmost
+     *      blocks are at 0. Rotations match the ones made by pieceRow().
+     */
+    private static int[] canonicalCells(int[] shape)
+    {
+        int[] best = null;
+        int[] cells = shape.clone();
+        for(int j = 0; j < 4; j++)
+        {
+            Arrays.sort(cells);
+            if(best == null || Arrays.compare(cells, best) < 0)
+            {
+                best = cells.clone();
+            }
+
+            // rotate (x, y) to (-y - 1, x) and translate right
+            int minX = Integer.MAX_VALUE;
+            for(int cell : cells)
+            {
+                minX = Math.min(minX, -(cell >>> 16) - 1);
+            }
+            for(int i = 0; i < cells.length; i++)
+            {
+                final int x = cells[i] & 0xFFFF;
+                final int y = cells[i] >>> 16;
+                cells[i] = (x << 16) | (-y - 1 - minX);
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Moves the points so that the lowest and leftmost ones are at 0, as the
+     *      constructor expects, and checks that no point is given twice.
+     */
+    private static Point[] normalize(Point[] points)
+    {
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        for(Point point : points)
+        {
+            minX = Math.min(minX, point.x);
+            minY = Math.min(minY, point.y);
+        }
+
+        HashSet<Point> seen = new HashSet<>();
+        Point[] moved = new Point[points.length];
+        for(int i = 0; i < points.length; i++)
+        {
+            moved[i] = new Point(points[i].x - minX, points[i].y - minY);
+            if(! seen.add(moved[i]))
+            {
+                throw new RuntimeException("block " + points[i].x + "," + points[i].y +
+                        " is given twice");
+            }
+        }
+
+        return moved;
+    }
+
     /**
      * Given a string of x,y pairs ("0 0   0 1 0 2 1 0"), parses the points into
-     *      a Point[] array.
+     *      a Point[] array. A missing y is a parse error.
      */
     private static Point[] parsePoints(String string)
     {
@@ -333,7 +934,7 @@ public final class Piece {
                 points.add(new Point(x, y));
             }
         }
-        catch (NumberFormatException e)
+        catch (NumberFormatException | NoSuchElementException e)
         {
             throw new RuntimeException("Could not parse x,y string:" + string);
         }
@@ -0,0 +1,145 @@
+import java.util.Arrays;
+
+/**
+ * A bounded cache of board ratings keyed by the board's hash.
+ *  The cache has a fixed number of entries, so its memory use does not grow:
+ *      each entry is a long key, a double value and a reference bit, about 17
+ *      bytes. Entries are grouped into sets of WAYS; a key can only live in
+ *      the set its hash picks, and when the set is full the entry to replace
+ *      is chosen by the CLOCK algorithm -- a hand sweeps the set, giving each
+ *      entry used since the hand last passed a second chance, and replaces
+ *      the first one that was not used.
+ *  A cache is not thread-safe.
+ *
+ * @author agent
+ * @version 17 October 2026
+ */
+public class RateCache
+{
+    // entries per set
+    public static final int WAYS = 4;
+
+    private long[] keys;
+    private double[] values;
+    private boolean[] valid;
+    private boolean[] referenced;
+    private byte[] hands;       // the CLOCK hand of each set
+    private int setMask;
+
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates an empty cache.
+     *
+     *  @param capacity     the number of entries, rounded up to a power of 2
+     *                          and at least WAYS
+     */
+    public RateCache(int capacity)
+    {
+        final int minSets = Math.max(1, (capacity + WAYS - 1) / WAYS);
+        final int sets = (minSets == 1) ? 1 : Integer.highestOneBit(minSets - 1) << 1;
+        this.keys = new long[sets * WAYS];
+        this.values = new double[sets * WAYS];
+        this.valid = new boolean[sets * WAYS];
+        this.referenced = new boolean[sets * WAYS];
+        this.hands = new byte[sets];
+        this.setMask = sets - 1;
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     *  @return the number of entries the cache can hold
+     */
+    public int getCapacity()
+    {
+        return this.keys.length;
+    }
+
+    /**
+     * Returns the value stored for the key and counts a hit, or returns NaN and
+     *      counts a miss if the key is not in the cache.
+     *
+     *  @param key  the hash of the board
+     *  @return the stored rating, or NaN
+     */
+    public double get(long key)
+    {
+        final int base = this.setOf(key) * WAYS;
+        for (int i = base; i < base + WAYS; i++)
+        {
+            if (this.valid[i] && this.keys[i] == key)
+            {
+                this.referenced[i] = true;
+                this.hits++;
+                return this.values[i];
+            }
+        }
+
+        this.misses++;
+        return Double.NaN;
+    }
+
+    /**
+     * Stores a value for a key that is not in the cache, replacing an entry of
+     *      its set if the set is full.
+     *
+     *  @param key      the hash of the board
+     *  @param value    the rating of the board
+     */
+    public void put(long key, double value)
+    {
+        final int set = this.setOf(key);
+        final int base = set * WAYS;
+        int hand = this.hands[set];
+        while (this.valid[base + hand] && this.referenced[base + hand])
+        {
+            this.referenced[base + hand] = false;   // second chance
+            hand = (hand + 1) % WAYS;
+        }
+
+        this.keys[base + hand] = key;
+        this.values[base + hand] = value;
+        this.valid[base + hand] = true;
+        this.referenced[base + hand] = false;
+        this.hands[set] = (byte)((hand + 1) % WAYS);
+    }
+
+    /**
+     * Removes every entry; the counters are kept.
+     */
+    public void clear()
+    {
+        Arrays.fill(this.valid, false);
+    }
+
+    /**
+     * Returns the number of get() calls that found their key.
+     *
+     *  @return the number of hits so far
+     */
+    public long getHits()
+    {
+        return this.hits;
+    }
+
+    /**
+     * Returns the number of get() calls that did not find their key.
+     *
+     *  @return the number of misses so far
+     */
+    public long getMisses()
+    {
+        return this.misses;
+    }
+
+    /**
+     * Returns the set a key belongs to. Zobrist hashes are already well mixed,
+     *      so the high bits are folded in and the low bits used.
+     */
+    private int setOf(long key)
+    {
+        return (int)(key ^ (key >>> 32)) & this.setMask;
+    }
+}
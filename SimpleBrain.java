@@ -1,13 +1,28 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 /**
  * A simple Brain implementation.
- *  bestMove() iterates through all the possible x values and rotations to play a
- *      particular piece (there are only around 10-30 ways to play a piece).
+ *  bestMove() iterates through all the possible x values and distinct rotations
+ *      to play a particular piece (there are only around 10-30 ways to play a
+ *      piece).
  *      
  *  For each play, it uses the rateBoard() message to rate how good the resulting
  *      board is and it just remembers the play with the lowest score. Undo() is
  *      used to back-out each play before trying the next. To experiment with
  *      writing your own brain -- just subclass off SimpleBrain and override
  *      rateBoard().
+ *      
+ *  Different plays can leave identical boards (the O piece, or the repeating
+ *      rotations of the I, S and Z pieces after rows clear), so each resulting
+ *      board's hash is remembered and a board already rated during this call
+ *      is skipped -- it has the same score, so it could not be strictly better.
+ *      
+ *  On big boards the plays are rated in parallel, which needs rateBoard() to
+ *      be safe to call from several threads at once, as it is here. A
+ *      subclass that overrides rateBoard() is rated one play at a time unless
+ *      it also overrides getRateCost() to opt in.
  * 
  * @author Nick Parlante
  * @version    1.0, Mar 1, 2001
@@ -15,11 +30,47 @@
 
 public class SimpleBrain implements Brain
 {
+    // open-addressed set of the hashes of the boards already rated by the
+    //  current bestMove() call; a slot is in use when its stamp is ratedStamp,
+    //  so the set is emptied by bumping the stamp instead of clearing it
+    private long[] ratedHashes = new long[64];
+    private int[] ratedStamps = new int[64];
+    private int ratedStamp;
+    private int ratedCount;
+
+    // the plays listed by the current bestMove() call and their scores
+    private final Plays plays = new Plays();
+
+    // the score of a play after which the next piece cannot be played at all,
+    //  for brains that search further; worse than any rated board, but still
+    //  better than no move
+    protected static final double DEAD_END = 1e19;
+
+    // see setParallelThreshold()
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 50000;
+    private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+    // each worker thread's copy of the board for parallel rating
+    private final ThreadLocal<Board> replicas = new ThreadLocal<>();
+
+    // ratings of recently seen boards, by hash, or null when off; see
+    //  cachedRateBoard()
+    private RateCache rateCache;
+    private int cacheWidth;
+    private int cacheHeight;
+
     /**
      * Given a piece and a board, returns a move object that represents the best
      *      play for that piece, or returns null if no play is possible.
      *  See the Brain interface for details.
      *  
+     *  The plays are listed first and then rated, either one after another on
+     *      the given board, or -- when there is enough work to pay for it, see
+     *      setParallelThreshold() -- split across the common ForkJoinPool,
+     *      each worker placing plays on its own copy of the board. Either way
+     *      the move is the first play in the list with the lowest score, so
+     *      both paths pick exactly the same move.
+     *  
      *  @param board        the board in which to calculate the best move
      *  @param piece        the piece to place in the optimal location on the board
      *  @param limitHeight  the piece must be placed below this height
@@ -27,63 +78,527 @@ public class SimpleBrain implements Brain
      */
     public Move bestMove(Board board, Piece piece, int limitHeight)
     {
+        return this.bestMove(board, piece, limitHeight, null);
+    }
+
+    /**
+     * Like bestMove(board, piece, limitHeight), but fills in the given move, if
+     *      it is non-null, instead of allocating one. Nothing is allocated once
+     *      the scratch arrays have grown to the board's size.
+     *  See the Brain interface for details.
+     *  
+     *  @param board        the board in which to calculate the best move
+     *  @param piece        the piece to place in the optimal location on the board
+     *  @param limitHeight  the piece must be placed below this height
+     *  @param move         the move to hold the result, or null for a new one
+     *  @return             the best move for the specified piece
+     */
+    public Move bestMove(Board board, Piece piece, int limitHeight, Move move)
+    {
+        final Plays plays = this.plays;
+        final int count = this.listPlays(board, piece, limitHeight, plays);
+
+        if (this.isParallelWorthwhile(board, count))
+        {
+            ForkJoinPool.commonPool().invoke(new RateTask(board, 0, count));
+        }
+        else
+        {
+            this.rateRange(board, 0, count, true);
+        }
+
+        // the first play with the lowest score wins
         double bestScore = 1e20;
-        int bestX = 0;
-        int bestY = 0;
-        Piece bestPiece = null;
-        Piece current = piece;
+        int best = -1;
+        for (int i = 0; i < count; i++)
+        {
+            if (plays.scores[i] < bestScore)
+            {
+                bestScore = plays.scores[i];
+                best = i;
+            }
+        }
+
+        if (best < 0)
+        {
+            return null;    // could not find a play at all!
+        }
+
+        if (move == null)
+        {
+            move = new Move();
+        }
+        move.set(plays.xs[best], plays.ys[best], plays.pieces[best], bestScore);
+        return move;
+    }
+
+    /**
+     * Ignores the preview here; brains that look ahead override the version
+     *      that takes a move. See the Brain interface for details.
+     *  
+     *  @param board        the board in which to calculate the best move
+     *  @param piece        the piece to place in the optimal location on the board
+     *  @param preview      the pieces that come next, in order; may be empty
+     *  @param limitHeight  the piece must be placed below this height
+     *  @return             the best move for the specified piece
+     */
+    public Move bestMove(Board board, Piece piece, Piece[] preview, int limitHeight)
+    {
+        return this.bestMove(board, piece, preview, limitHeight, null);
+    }
+
+    /**
+     * Ignores the preview; see bestMove(board, piece, limitHeight, move).
+     *  
+     *  @param board        the board in which to calculate the best move
+     *  @param piece        the piece to place in the optimal location on the board
+     *  @param preview      the pieces that come next; not used
+     *  @param limitHeight  the piece must be placed below this height
+     *  @param move         the move to hold the result, or null for a new one
+     *  @return             the best move for the specified piece
+     */
+    public Move bestMove(Board board, Piece piece, Piece[] preview, int limitHeight, Move move)
+    {
+        return this.bestMove(board, piece, limitHeight, move);
+    }
+
+    /**
+     * Sets how much work a bestMove() call needs before it is split across
+     *      threads. The work is estimated as the number of plays times
+     *      getRateCost(). 0 always splits the brains that opted in and
+     *      Integer.MAX_VALUE never splits any.
+     *  
+     *  @param threshold    the least work to rate the plays in parallel
+     */
+    public void setParallelThreshold(int threshold)
+    {
+        this.parallelThreshold = threshold;
+    }
+
+    /**
+     * Returns roughly the cost of placing a play on the board, clearing rows
+     *      and rating the result, in the units of setParallelThreshold(), or 0
+     *      to always rate the plays one after another on the caller's thread.
+     *  SimpleBrain's own rateBoard() costs about the board's width plus its
+     *      max height. A subclass gets 0, since its rateBoard() may not be
+     *      safe to call from several threads; override this to rate in
+     *      parallel once it is.
+     *  
+     *  @param board    the board the plays are placed on
+     *  @return         the cost of rating one play, or 0 to never go parallel
+     */
+    protected int getRateCost(Board board)
+    {
+        if (this.getClass() != SimpleBrain.class)
+        {
+            return 0;
+        }
+
+        return board.getWidth() + board.getMaxHeight();
+    }
+
+    /**
+     * Returns true if rating the given number of plays on the board is enough
+     *      work to split across the common pool's threads.
+     */
+    private boolean isParallelWorthwhile(Board board, int count)
+    {
+        final int cost = this.getRateCost(board);
+        return cost > 0 && ForkJoinPool.getCommonPoolParallelism() > 1 && count > 1 &&
+                (long)count * cost >= this.parallelThreshold;
+    }
+
+    /**
+     * Lists every play of the piece into plays: the distinct rotations,
+     *      starting with the given one, and for each the columns from left to
+     *      right where the dropped piece stays below the limit. Each
+     *      (rotation, column) pair is a different placement.
+     *  Only plays is changed, so brains may list plays for several boards at
+     *      once on different threads.
+     *  
+     *  @param board        the board to list the plays on
+     *  @param piece        the piece to play
+     *  @param limitHeight  the piece must be placed below this height
+     *  @param plays        receives the plays; any earlier plays are replaced
+     *  @return             the number of plays
+     */
+    protected int listPlays(Board board, Piece piece, int limitHeight, Plays plays)
+    {
+        final Piece[] rotations = piece.getRotations();
+        final int firstRotation = piece.getRotationIndex();
+        if (plays.dropHeights.length < board.getWidth())
+        {
+            plays.dropHeights = new int[board.getWidth()];
+        }
 
-        // loop through all the rotations
-        while (true)
+        int count = 0;
+        for (int r = 0; r < rotations.length; r++)
         {
-            final int yBound = limitHeight - current.getHeight() + 1;
-            final int xBound = board.getWidth() - current.getWidth() + 1;
+            final Piece current = rotations[(firstRotation + r) % rotations.length];
+            final int yBound = Math.min(limitHeight, board.getHeight()) -
+                    current.getHeight() + 1;
+            final int xBound = board.dropHeights(current, plays.dropHeights);
+            plays.ensureCapacity(count + xBound);
 
-            // for current rotation, try all the possible columns
             for (int x = 0; x < xBound; x++)
             {
-                int y = board.dropHeight(current, x);
-                if (y < yBound) // piece does not stick up too far
+                if (plays.dropHeights[x] < yBound) // piece does not stick up too far
                 {
-                    int result = board.place(current, x, y);
-                    if (result <= Board.PLACE_ROW_FILLED)
-                    {
-                        if (result == Board.PLACE_ROW_FILLED)
-                        {
-                            board.clearRows();
-                        }
-
-                        double score = rateBoard(board);
-
-                        if (score < bestScore)
-                        {
-                            bestScore = score;
-                            bestX = x;
-                            bestY = y;
-                            bestPiece = current;
-                        }
-                    }
-
-                    // back out that play, loop around for the next
-                    board.undo();
+                    plays.pieces[count] = current;
+                    plays.xs[count] = x;
+                    plays.ys[count] = plays.dropHeights[x];
+                    plays.chosen[count] = false;
+                    count++;
                 }
             }
+        }
+
+        plays.count = count;
+        return count;
+    }
 
-            current = current.nextRotation();
-            if (current == piece)
+    /**
+     * Rates every listed play: places it on the board, stores the rating and
+     *      the resulting board's hash, and undoes it.
+     *  With cached true the ratings go through the rating cache, which is
+     *      only safe from the thread calling bestMove(); otherwise rateBoard()
+     *      is called directly and boards of their own may be rated on
+     *      several threads at once.
+     *  
+     *  @param board        the board the plays were listed on; must be committed
+     *  @param plays        the plays, as listPlays() left them
+     *  @param cached       true to rate through the rating cache
+     */
+    protected void ratePlays(Board board, Plays plays, boolean cached)
+    {
+        for (int i = 0; i < plays.count; i++)
+        {
+            if (board.placeTrusted(plays.pieces[i], plays.xs[i], plays.ys[i]) != 0)
             {
-                break;    // break if back to original rotation
+                board.clearRows();
             }
+            plays.scores[i] = cached ? this.cachedRateBoard(board) : rateBoard(board);
+            plays.hashes[i] = board.getHash();
+            board.undo();
         }
+    }
 
-        if (bestPiece == null)
+    /**
+     * Searches the best rated plays further, best first: each one is left on
+     *      the board with push() and commit(), scored by expandPlay(), and
+     *      popped. Up to expanded plays are searched, stopping once the
+     *      deadline has passed -- the rest rated worse anyway. A search that
+     *      ends past the deadline may have been cut short, so its score is
+     *      dropped; if no search ended in time, the best rated play is taken
+     *      with its rating instead.
+     *  
+     *  @param board        the board the plays were listed on; must be committed
+     *  @param plays        the listed and rated plays; none chosen yet
+     *  @param expanded     how many of the best rated plays to search
+     *  @param limitHeight  the pieces must be placed below this height
+     *  @param level        passed on to expandPlay()
+     *  @param deadline     the System.nanoTime() after which to stop
+     *  @return             the play with the lowest score, the first one on
+     *                          ties, or -1 if there are no plays; its score is
+     *                          left in plays.bestScore
+     */
+    protected int expandBestFirst(Board board, Plays plays, int expanded, int limitHeight,
+            int level, long deadline)
+    {
+        double bestScore = 1e20;
+        int best = -1;
+        for (int n = 0; n < Math.min(expanded, plays.count); n++)
         {
-            return null;    // could not find a play at all!
+            if (System.nanoTime() > deadline)
+            {
+                break;    // out of time; the rest rated worse anyway
+            }
+
+            final int i = plays.nextBest();
+            board.push();
+            if (board.placeTrusted(plays.pieces[i], plays.xs[i], plays.ys[i]) != 0)
+            {
+                board.clearRows();
+            }
+            board.commit();
+            final double score = this.expandPlay(board, limitHeight, level, deadline);
+            board.pop();
+
+            if (System.nanoTime() > deadline)
+            {
+                break;    // the search may have been cut short
+            }
+            if (score < bestScore)
+            {
+                bestScore = score;
+                best = i;
+            }
         }
-        else
+
+        if (best < 0 && plays.count > 0)
         {
-            return new Move(bestX, bestY, bestPiece, bestScore);
+            // out of time before any search ended; take the best rated play
+            best = -1;
+            for (int i = 0; i < plays.count; i++)
+            {
+                if (best < 0 || plays.scores[i] < plays.scores[best])
+                {
+                    best = i;
+                }
+            }
+            bestScore = plays.scores[best];
         }
+
+        plays.bestScore = bestScore;
+        return best;
+    }
+
+    /**
+     * Returns the score of a board that a play has just been placed on, for
+     *      expandBestFirst(). SimpleBrain searches no further and rates it;
+     *      brains that look ahead override this.
+     *  
+     *  @param board        the board with the play placed and committed; must
+     *                          be left as it is
+     *  @param limitHeight  the pieces must be placed below this height
+     *  @param level        how much further to search, as the brain counts it
+     *  @param deadline     the System.nanoTime() after which to stop searching;
+     *                          the score is dropped if the search ends later
+     *  @return             the score of the play; lower is better
+     */
+    protected double expandPlay(Board board, int limitHeight, int level, long deadline)
+    {
+        return this.cachedRateBoard(board);
+    }
+
+    /**
+     * Rates plays from to to - 1 on the board, storing each score in plays.
+     *  When sequential is true, a play that leaves a board already rated by
+     *      this call gets Double.MAX_VALUE instead: it has the same score as
+     *      the earlier play, so it could not win anyway. The other boards are
+     *      rated through the rating cache, which only the calling thread uses.
+     */
+    private void rateRange(Board board, int from, int to, boolean sequential)
+    {
+        if (sequential)
+        {
+            this.ratedCount = 0;
+            this.ratedStamp++;
+            if (this.ratedStamp == 0)
+            {
+                Arrays.fill(this.ratedStamps, 0);
+                this.ratedStamp = 1;
+            }
+        }
+
+        for (int i = from; i < to; i++)
+        {
+            // a dropped piece that fits under the top needs no checks
+            if (board.placeTrusted(this.plays.pieces[i], this.plays.xs[i],
+                    this.plays.ys[i]) != 0)
+            {
+                board.clearRows();
+            }
+
+            if (! sequential)
+            {
+                this.plays.scores[i] = rateBoard(board);
+            }
+            else if (this.markRated(board.getHash()))
+            {
+                this.plays.scores[i] = this.cachedRateBoard(board);
+            }
+            else
+            {
+                this.plays.scores[i] = Double.MAX_VALUE;
+            }
+
+            // back out that play, loop around for the next
+            board.undo();
+        }
+    }
+
+    /**
+     * Rates a range of the listed plays, splitting it in half until the
+     *      pieces are small enough, and rating each piece on the worker
+     *      thread's own copy of the board.
+     */
+    @SuppressWarnings("serial")
+    private class RateTask extends RecursiveAction
+    {
+        private final Board board;
+        private final int from;
+        private final int to;
+
+        RateTask(Board board, int from, int to)
+        {
+            this.board = board;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            final int grain = Math.max(4, (this.to - this.from) /
+                    (4 * ForkJoinPool.getCommonPoolParallelism()));
+            if (this.to - this.from > grain)
+            {
+                final int middle = (this.from + this.to) >>> 1;
+                invokeAll(new RateTask(this.board, this.from, middle),
+                        new RateTask(this.board, middle, this.to));
+            }
+            else
+            {
+                Board replica = SimpleBrain.this.replicas.get();
+                if (replica == null || replica.getWidth() != this.board.getWidth() ||
+                        replica.getHeight() != this.board.getHeight())
+                {
+                    replica = new Board(this.board);
+                    SimpleBrain.this.replicas.set(replica);
+                }
+                else
+                {
+                    replica.copyFrom(this.board);
+                }
+
+                SimpleBrain.this.rateRange(replica, this.from, this.to, false);
+            }
+        }
+    }
+
+    /**
+     * Remembers that the board with the given hash has been rated by the
+     *  current bestMove() call.
+     *  
+     *  @param hash     the hash of the board about to be rated
+     *  @return         true if the board had not been rated yet
+     */
+    private boolean markRated(long hash)
+    {
+        // keep the table at most half full so the probes stay short; wide
+        //  boards can have hundreds of plays per piece
+        if (2 * (this.ratedCount + 1) > this.ratedHashes.length)
+        {
+            long[] oldHashes = this.ratedHashes;
+            int[] oldStamps = this.ratedStamps;
+            this.ratedHashes = new long[2 * oldHashes.length];
+            this.ratedStamps = new int[2 * oldStamps.length];
+            this.ratedCount = 0;
+            for (int i = 0; i < oldHashes.length; i++)
+            {
+                if (oldStamps[i] == this.ratedStamp)
+                {
+                    this.insertRated(oldHashes[i]);
+                }
+            }
+        }
+
+        return this.insertRated(hash);
+    }
+
+    /**
+     * Adds a hash to the rated set, which must have a free slot.
+     *  
+     *  @param hash     the hash to add
+     *  @return         true if the hash was not in the set yet
+     */
+    private boolean insertRated(long hash)
+    {
+        // Zobrist hashes are already well mixed, so the low bits will do
+        final int mask = this.ratedHashes.length - 1;
+        int i = (int)hash & mask;
+        while (this.ratedStamps[i] == this.ratedStamp)
+        {
+            if (this.ratedHashes[i] == hash)
+            {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+
+        this.ratedHashes[i] = hash;
+        this.ratedStamps[i] = this.ratedStamp;
+        this.ratedCount++;
+        return true;
+    }
+
+    /**
+     * Returns rateBoard() of the board, looking it up in a bounded cache of
+     *      recent ratings keyed by the board's hash first. Identical boards
+     *      come up again and again -- across moves and across the plies of a
+     *      lookahead -- and get the same rating, so subclasses that override
+     *      rateBoard() are cached too. rateBoard() must only depend on the
+     *      board for this to be right.
+     *  The cache is off until setRateCacheSize() is called: this class's
+     *      rateBoard() is O(width), about the cost of a cache lookup, so it
+     *      only pays for brains with costlier ratings. Use the hit and miss
+     *      counters to size it.
+     *  The cache is emptied when the board size changes. It is not
+     *      thread-safe, so code rating boards on several threads calls
+     *      rateBoard() directly.
+     *  
+     *  @param board    the specified board to rate
+     *  @return         the rating for the specified board
+     */
+    protected double cachedRateBoard(Board board)
+    {
+        if (this.rateCache == null)
+        {
+            return rateBoard(board);
+        }
+
+        if (board.getWidth() != this.cacheWidth || board.getHeight() != this.cacheHeight)
+        {
+            this.rateCache.clear();
+            this.cacheWidth = board.getWidth();
+            this.cacheHeight = board.getHeight();
+        }
+
+        final long hash = board.getHash();
+        double score = this.rateCache.get(hash);
+        if (Double.isNaN(score))
+        {
+            score = rateBoard(board);
+            this.rateCache.put(hash, score);
+        }
+
+        return score;
+    }
+
+    /**
+     * Sets the number of entries in the rating cache, emptying it; 0 turns
+     *      the cache off. Each entry takes about 17 bytes.
+     *  
+     *  @param entries  the number of boards to remember ratings for
+     */
+    public void setRateCacheSize(int entries)
+    {
+        this.rateCache = (entries > 0) ? new RateCache(entries) : null;
+        this.cacheWidth = 0;
+        this.cacheHeight = 0;
+    }
+
+    /**
+     * Returns how many ratings were found in the rating cache since its size
+     *      was last set.
+     *  
+     *  @return the number of cache hits
+     */
+    public long getRateCacheHits()
+    {
+        return (this.rateCache == null) ? 0 : this.rateCache.getHits();
+    }
+
+    /**
+     * Returns how many ratings had to be computed because they were not in the
+     *      rating cache since its size was last set.
+     *  
+     *  @return the number of cache misses
+     */
+    public long getRateCacheMisses()
+    {
+        return (this.rateCache == null) ? 0 : this.rateCache.getMisses();
     }
 
     /**
@@ -103,27 +618,15 @@ public class SimpleBrain implements Brain
         final int maxHeight = board.getMaxHeight();
 
         int sumHeight = 0;
-        int holes = 0;
 
-        // count the holes, and sum up the heights
+        // sum up the heights; the board keeps count of the holes itself
         for (int x=0; x<width; x++)
         {
-            final int colHeight = board.getColumnHeight(x);
-            sumHeight += colHeight;
-
-            int y = colHeight - 2;  // addr of first possible hole
-
-            while (y >= 0)
-            {
-                if (!board.getGrid(x, y))
-                {
-                    holes++;
-                }
-                
-                y--;
-            }
+            sumHeight += board.getColumnHeight(x);
         }
 
+        final int holes = board.getHoles();
+
         double avgHeight = ((double)sumHeight) / width;
 
         // Add up the counts to make an overall score
@@ -136,4 +639,61 @@ public class SimpleBrain implements Brain
         return "Simple Brain";
     }
 
+    /**
+     * The plays of one piece on a board and their ratings, filled in by
+     *      listPlays() and ratePlays() and reused from one search to the next.
+     *      Brains that search several boards keep one for each.
+     */
+    protected static class Plays
+    {
+        protected int count;
+        protected Piece[] pieces = new Piece[0];
+        protected int[] xs = new int[0];
+        protected int[] ys = new int[0];
+        protected double[] scores = new double[0];
+        protected long[] hashes = new long[0];
+        protected boolean[] chosen = new boolean[0];
+        protected double bestScore;
+
+        // landing rows for each column of the rotation being listed
+        private int[] dropHeights = new int[0];
+
+        /**
+         * Grows the arrays to hold at least the given number of plays.
+         */
+        private void ensureCapacity(int capacity)
+        {
+            if (this.xs.length < capacity)
+            {
+                final int length = 2 * capacity;
+                this.pieces = Arrays.copyOf(this.pieces, length);
+                this.xs = Arrays.copyOf(this.xs, length);
+                this.ys = Arrays.copyOf(this.ys, length);
+                this.scores = Arrays.copyOf(this.scores, length);
+                this.hashes = Arrays.copyOf(this.hashes, length);
+                this.chosen = Arrays.copyOf(this.chosen, length);
+            }
+        }
+
+        /**
+         * Returns the best rated play not chosen yet, the first one on ties,
+         *      and marks it as chosen. There must be one left.
+         *
+         *  @return the index of the play
+         */
+        protected int nextBest()
+        {
+            int best = -1;
+            for (int i = 0; i < this.count; i++)
+            {
+                if (! this.chosen[i] && (best < 0 || this.scores[i] < this.scores[best]))
+                {
+                    best = i;
+                }
+            }
+            this.chosen[best] = true;
+
+            return best;
+        }
+    }
 }
@@ -11,6 +11,15 @@ public class SmallBrain extends SimpleBrain
         double score = super.rateBoard(board);
         return (10000 - score);
     }
+
+    /**
+     * rateBoard() only reads the board, like SimpleBrain's, so the plays can
+     *      be rated in parallel at the same cost.
+     */
+    protected int getRateCost(Board board)
+    {
+        return board.getWidth() + board.getMaxHeight();
+    }
     
     public String toString()
     {
@@ -23,9 +23,13 @@ public class TetrisViewer
         JComponent container = (JComponent)frame.getContentPane();
         container.setLayout(new BorderLayout());
             
+        // the board size can be set with -Dtetris.width=... -Dtetris.height=...
+        final int boardWidth = Integer.getInteger("tetris.width", JTetris.WIDTH);
+        final int boardHeight = Integer.getInteger("tetris.height", JTetris.HEIGHT);
         final int PIXELS = 16;
-        JTetris tetris = new JBrainTetris((JTetris.WIDTH * PIXELS) + 2,
-                (JTetris.HEIGHT + JTetris.TOP_SPACE) * (PIXELS + 2));
+        JTetris tetris = new JBrainTetris((boardWidth * PIXELS) + 2,
+                (boardHeight + JTetris.TOP_SPACE) * (PIXELS + 2),
+                boardWidth, boardHeight);
         
         
         container.add(tetris, BorderLayout.CENTER);